@@ -0,0 +1,18 @@
+# runs the GA as coordinator with WORKERS evaluation worker JVMs on this box
+# usage: ./cluster.sh [workers] [games per worker] - more boxes can join with
+# java -cp bin EvaluationWorker <coordinator host> $PORT
+COMPONENT=$(pwd)
+PORT=${PORT:-4701}
+WORKERS=${1:-2}
+mkdir bin 2> /dev/null
+javac -d $COMPONENT/bin $COMPONENT/src/*.java
+java -cp $COMPONENT/bin GeneticAlgorithm --coordinator $PORT &
+COORDINATOR=$!
+sleep 1
+WORKER_PIDS=""
+for i in $(seq $WORKERS); do
+  java -cp $COMPONENT/bin EvaluationWorker localhost $PORT $2 > worker-$i.log 2>&1 &
+  WORKER_PIDS="$WORKER_PIDS $!"
+done
+wait $COORDINATOR
+kill $WORKER_PIDS 2> /dev/null
@@ -1,86 +1,226 @@
 import java.util.Arrays;
-import java.util.Random;
-import java.util.stream.IntStream;
+import java.util.SplittableRandom;
 
-public class AdvancedState extends State {
+public class AdvancedState extends BitBoardState {
 
   private int randomSeed;
-  private Random rand;
+  // pieces of the game, the same sequence for the same seed on every run -
+  // dealt from tape while it lasts and from rand after that
+  private SplittableRandom rand;
+  private PieceTape tape;
+  private int tapeIndex = 0;
+
+  // all rows of a column bitmask
+  private static final int ALL_ROWS = (1 << ROWS) - 1;
+
+  // feature aggregates kept up to date by makeMove - only the columns a piece
+  // lands in (and their neighbours) are rescanned unless rows were cleared
+  private int numHoles = 0;
+  private int bumpiness = 0;
+  private int wellSum = 0;
+  private int highestColumn = 0;
+  private int aggregateHeight = 0;
+
+  // undo journal for in-place search - one entry per tryMove() not yet undone,
+  // holding the rows, top, cols, next piece, rows cleared, turn, lost flag and
+  // the feature aggregates
+  private static final int JOURNAL_ENTRY = ROWS + 2 * COLS + 9;
+  private int[] journal = new int[8 * JOURNAL_ENTRY];
+  private int journalSize = 0;
+
+  // where placements, nodes and feature evaluations are counted, null for nowhere
+  private SearchMetrics metrics;
 
   public AdvancedState(long randomSeed) {
-    this.rand = new Random(randomSeed);
+    this.rand = new SplittableRandom(randomSeed);
+    this.nextPiece = randomPiece();
+  }
+
+  // a game of the seed of tape, with the same pieces as AdvancedState(seed)
+  public AdvancedState(PieceTape tape) {
+    this.tape = tape;
     this.nextPiece = randomPiece();
   }
 
   public int getAggregateHeight() {
-    int aggregateHeight = IntStream.of(top).sum();
     return aggregateHeight;
   }
 
   public int getNumHoles() {
-    int numHoles = 0;
-    for (int j = 0; j < COLS; j++) {
-      if (top[j] != 0) {
-        for (int i = top[j] - 1; i >= 0; i--) {
-          if (field[i][j] == 0) {
-            numHoles++;
-          }
-        }
-      }
-    }
     return numHoles * 10;
   }
 
   public int getBumpiness() {
-    int bumpiness = 0;
-    for (int i = 0; i < COLS - 1; i++) {
-      bumpiness += Math.abs(top[i] - top[i + 1]);
-    }
     return bumpiness;
   }
 
   public int getHighestColumn() {
-    int highestCol = 0;
-    for (int i = 0; i < COLS; i++) {
-      highestCol = Math.max(highestCol, top[i]);
-    }
-    return highestCol;
+    return highestColumn;
   }
 
   public int getWellSum() {
-    int next, prev, wellSum = 0;
-    cleanField();
-    for (int j = 0; j < COLS; j++) {
-      for (int i = ROWS - 1; i >= 0; i--) {
-        if (field[i][j] == 0) {
-          if (j == 0 || field[i][j - 1] != 0) {
-            if (j == COLS - 1 || field[i][j + 1] != 0) {
-              int wellHeight = i - top[j] + 1;
-              wellSum += wellHeight * (wellHeight + 1) / 2;
-            }
-          }
-        } else {
-          break;
-        }
+    return wellSum;
+  }
+
+  // well sum of all columns but first to last
+  public int getWellSumExcept(int first, int last) {
+    int wells = wellSum;
+    for (int c = first; c <= last; c++) {
+      wells -= columnWell(c);
+    }
+    return wells;
+  }
+
+  // empty cells below the top of column c
+  private int columnHoles(int c) {
+    return top[c] - Integer.bitCount(cols[c]);
+  }
+
+  // well sum contribution of column c - every empty cell above its top with both
+  // neighbours filled (walls count as filled) adds wellHeight * (wellHeight + 1) / 2
+  private int columnWell(int c) {
+    int left = c == 0 ? ALL_ROWS : cols[c - 1];
+    int right = c == COLS - 1 ? ALL_ROWS : cols[c + 1];
+    int cells = left & right & ALL_ROWS & ~((1 << top[c]) - 1);
+    int well = 0;
+    while (cells != 0) {
+      int wellHeight = Integer.numberOfTrailingZeros(cells) - top[c] + 1;
+      well += wellHeight * (wellHeight + 1) / 2;
+      cells &= cells - 1;
+    }
+    return well;
+  }
+
+  // rescan every column - needed after rows were cleared
+  private void recomputeFeatures() {
+    numHoles = 0;
+    bumpiness = 0;
+    wellSum = 0;
+    highestColumn = 0;
+    aggregateHeight = 0;
+    for (int c = 0; c < COLS; c++) {
+      numHoles += columnHoles(c);
+      wellSum += columnWell(c);
+      highestColumn = Math.max(highestColumn, top[c]);
+      aggregateHeight += top[c];
+      if (c < COLS - 1) {
+        bumpiness += Math.abs(top[c] - top[c + 1]);
       }
     }
-    return wellSum;
   }
 
-  public void cleanField() {
-    for (int j = 0; j < COLS; j++) {
-      for (int i = top[j]; i < ROWS; i++) {
-        field[i][j] = 0;
+  @Override
+  public boolean makeMove(int orient, int slot) {
+    if (metrics != null && journalSize == 0) {
+      metrics.countPlacement();
+    }
+    int rowsBefore = getRowsCleared();
+    int end = slot + placementWidth[placementOf(nextPiece, orient, slot)];
+    // wells and bumpiness also depend on the columns next to the piece
+    int first = Math.max(slot - 1, 0);
+    int last = Math.min(end, COLS - 1);
+
+    // take out what the touched columns contribute before the move
+    for (int c = first; c <= last; c++) {
+      wellSum -= columnWell(c);
+      if (c < last) {
+        bumpiness -= Math.abs(top[c] - top[c + 1]);
       }
     }
+    for (int c = slot; c < end; c++) {
+      numHoles -= columnHoles(c);
+      aggregateHeight -= top[c];
+    }
+
+    if (!super.makeMove(orient, slot)) {
+      recomputeFeatures();
+      return false;
+    }
+    if (getRowsCleared() != rowsBefore) {
+      recomputeFeatures();
+      return true;
+    }
+
+    // without cleared rows tops only grow
+    for (int c = first; c <= last; c++) {
+      wellSum += columnWell(c);
+      if (c < last) {
+        bumpiness += Math.abs(top[c] - top[c + 1]);
+      }
+    }
+    for (int c = slot; c < end; c++) {
+      numHoles += columnHoles(c);
+      aggregateHeight += top[c];
+      highestColumn = Math.max(highestColumn, top[c]);
+    }
+    return true;
+  }
+
+  // play a move by its index in legalMoves() so that it can be taken back with
+  // undoMove() - returns false if the move loses, it still has to be undone
+  public boolean tryMove(int move) {
+    int base = journalSize * JOURNAL_ENTRY;
+    if (base + JOURNAL_ENTRY > journal.length) {
+      journal = Arrays.copyOf(journal, journal.length * 2);
+    }
+    System.arraycopy(rows, 0, journal, base, ROWS);
+    System.arraycopy(top, 0, journal, base + ROWS, COLS);
+    System.arraycopy(cols, 0, journal, base + ROWS + COLS, COLS);
+    base += ROWS + 2 * COLS;
+    journal[base] = nextPiece;
+    journal[base + 1] = getRowsCleared();
+    journal[base + 2] = turn;
+    journal[base + 3] = lost ? 1 : 0;
+    journal[base + 4] = numHoles;
+    journal[base + 5] = bumpiness;
+    journal[base + 6] = wellSum;
+    journal[base + 7] = highestColumn;
+    journal[base + 8] = aggregateHeight;
+    journalSize++;
+    if (metrics != null) {
+      metrics.countNode();
+    }
+
+    int[] legalMove = legalMoves[nextPiece][move];
+    return makeMove(legalMove[ORIENT], legalMove[SLOT]);
+  }
+
+  // take back the last move played with tryMove()
+  public void undoMove() {
+    journalSize--;
+    int base = journalSize * JOURNAL_ENTRY;
+    System.arraycopy(journal, base, rows, 0, ROWS);
+    System.arraycopy(journal, base + ROWS, top, 0, COLS);
+    System.arraycopy(journal, base + ROWS + COLS, cols, 0, COLS);
+    base += ROWS + 2 * COLS;
+    nextPiece = journal[base];
+    setRowsCleared(journal[base + 1]);
+    turn = journal[base + 2];
+    lost = journal[base + 3] != 0;
+    numHoles = journal[base + 4];
+    bumpiness = journal[base + 5];
+    wellSum = journal[base + 6];
+    highestColumn = journal[base + 7];
+    aggregateHeight = journal[base + 8];
   }
 
   @Override
   protected int randomPiece() {
+    // moves under search keep the piece so the game's sequence is not consumed
+    if (journalSize > 0) {
+      return nextPiece;
+    }
+    if (tape != null) {
+      if (tapeIndex < tape.length()) {
+        return tape.get(tapeIndex++);
+      }
+      rand = tape.generatorAfterTape();
+      tape = null;
+    }
     if (this.rand == null) {
       return (int) (Math.random() * N_PIECES);
     }
-    return (int) (this.rand.nextDouble() * N_PIECES);
+    return this.rand.nextInt(N_PIECES);
   }
 
   public int[][] copy2DArray(int[][] arr) {
@@ -97,10 +237,35 @@ public class AdvancedState extends State {
     this.nextPiece = nextPiece;
   }
 
+  public SearchMetrics getMetrics() {
+    return metrics;
+  }
+
+  public void setMetrics(SearchMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  // a clone counting into metrics - plain clones count nowhere as they are
+  // often searched on another thread
+  public AdvancedState clone(SearchMetrics metrics) {
+    AdvancedState clonedState = clone();
+    if (metrics != null) {
+      metrics.countClone();
+      clonedState.metrics = metrics;
+    }
+    return clonedState;
+  }
+
   public AdvancedState clone() {
     AdvancedState clonedState = new AdvancedState(randomSeed);
-    clonedState.field = copy2DArray(getField());
+    clonedState.rows = Arrays.copyOf(rows, ROWS);
     clonedState.top = Arrays.copyOf(getTop(), getTop().length);
+    clonedState.cols = Arrays.copyOf(cols, COLS);
+    clonedState.numHoles = numHoles;
+    clonedState.bumpiness = bumpiness;
+    clonedState.wellSum = wellSum;
+    clonedState.highestColumn = highestColumn;
+    clonedState.aggregateHeight = aggregateHeight;
     clonedState.nextPiece = getNextPiece();
     clonedState.setRowsCleared(getRowsCleared());
     return clonedState;
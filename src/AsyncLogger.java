@@ -0,0 +1,143 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+// Structured log of the run - one JSON object per line in Constant.LOG_FILE,
+// such as a record per finished game. Records go through a bounded queue to
+// a single writer thread, and a game thread never waits for it: when the
+// queue is full the record is dropped and counted instead. Whole files such
+// as output.txt are written by the same thread. Every JVM needs a log file of
+// its own, see open().
+public class AsyncLogger {
+
+  private static volatile AsyncLogger instance;
+
+  private final ArrayBlockingQueue<Entry> queue = new ArrayBlockingQueue<Entry>(Constant.LOG_QUEUE_CAPACITY);
+  private final LongAdder dropped = new LongAdder();
+  private final Thread writer = new Thread(this::writeEntries, "log writer");
+  // LOG_FILE, null when records are off or it can't be written
+  private volatile Writer log;
+
+  private AsyncLogger(String fileName, boolean append) {
+    if (fileName != null) {
+      try {
+        log = new BufferedWriter(new FileWriter(fileName, append));
+      } catch (IOException e) {
+        System.out.println("Couldn't open log " + fileName);
+      }
+    }
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  // the logger, writing records over Constant.LOG_FILE unless open() came first
+  public static AsyncLogger getInstance() {
+    AsyncLogger logger = instance;
+    if (logger != null) {
+      return logger;
+    }
+    synchronized (AsyncLogger.class) {
+      if (instance == null) {
+        instance = new AsyncLogger(Constant.LOG_FILE, false);
+      }
+      return instance;
+    }
+  }
+
+  // records go to fileName instead, added to its end when append, null for
+  // no records - only before the first getInstance()
+  public static synchronized void open(String fileName, boolean append) {
+    if (instance != null) {
+      throw new IllegalStateException("Log is already open");
+    }
+    instance = new AsyncLogger(fileName, append);
+  }
+
+  // a record that is already a JSON object, dropped if the queue is full
+  public void record(String json) {
+    if (log == null) {
+      return;
+    }
+    if (!queue.offer(new Entry(null, json))) {
+      dropped.increment();
+    }
+  }
+
+  // replaces fileName with text, waits for room in the queue if needed
+  public void writeFile(String fileName, String text) {
+    try {
+      queue.put(new Entry(fileName, text));
+    } catch (InterruptedException e) {
+      System.out.println("ERROR: Thread execution interrupted");
+    }
+  }
+
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  // writes what is queued and stops the writer
+  public void close() {
+    try {
+      queue.put(new Entry(null, null));
+      writer.join();
+    } catch (InterruptedException e) {
+      System.out.println("ERROR: Thread execution interrupted");
+    }
+  }
+
+  private void writeEntries() {
+    while (true) {
+      Entry entry;
+      try {
+        entry = queue.take();
+      } catch (InterruptedException e) {
+        return;
+      }
+      if (entry.text == null) {
+        break;
+      }
+      if (entry.fileName != null) {
+        try (Writer out = new BufferedWriter(new FileWriter(entry.fileName))) {
+          out.write(entry.text);
+        } catch (IOException e) {
+          System.out.println("Couldn't save file");
+        }
+        continue;
+      }
+      try {
+        if (log != null) {
+          log.write(entry.text);
+          log.write('\n');
+          if (queue.isEmpty()) {
+            log.flush();
+          }
+        }
+      } catch (IOException e) {
+        // records stop, files are still written
+        System.out.println("Couldn't write log: " + e.getMessage());
+        log = null;
+      }
+    }
+    try {
+      if (log != null) {
+        log.close();
+      }
+    } catch (IOException e) {
+      System.out.println("Couldn't write log: " + e.getMessage());
+    }
+  }
+
+  private static class Entry {
+    private final String fileName;
+    private final String text;
+
+    Entry(String fileName, String text) {
+      this.fileName = fileName;
+      this.text = text;
+    }
+  }
+}
@@ -0,0 +1,253 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Microbenchmarks of the engine and search hot paths on fixed seeded board
+// positions. Each benchmark is warmed up and then measured over timed
+// iterations on one thread, reporting ops/sec with its spread over the
+// iterations and the bytes allocated per op, read from the thread's
+// allocation counter.
+//
+// java Benchmarks [filter] [--json results.json] [--baseline results.json]
+// runs the benchmarks whose name contains filter, optionally saves the
+// results and compares them with a saved baseline.
+public class Benchmarks {
+
+  private static final int WARMUP_ITERATIONS = 3;
+  private static final int MEASUREMENT_ITERATIONS = 5;
+  private static final long ITERATION_NANOS = 1000000000L;
+  // ops between two looks at the clock
+  private static final int BATCH = 64;
+  private static final int POSITIONS = 64;
+  private static final long SEED = 4701;
+  private static final double[] WEIGHTS = { -4.856393412802155, 3.5035969996231951, -5.696079737154641,
+      -2.880295692564255, -4.856393412802155 };
+
+  // one operation on the i-th call, returns something to keep it from being
+  // optimized away
+  private interface Op {
+    long run(int i);
+  }
+
+  private static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  // written so the JIT can't drop results
+  public static volatile long sink;
+
+  private static class Result {
+    private final String name;
+    private final double opsPerSec;
+    private final double error;
+    private final double bytesPerOp;
+
+    Result(String name, double opsPerSec, double error, double bytesPerOp) {
+      this.name = name;
+      this.opsPerSec = opsPerSec;
+      this.error = error;
+      this.bytesPerOp = bytesPerOp;
+    }
+  }
+
+  // State dealing the pieces of AdvancedState(seed) instead of Math.random(),
+  // so that both makeMove benchmarks play the same games
+  private static class SeededState extends State {
+    private SplittableRandom rand;
+
+    SeededState(long seed) {
+      rand = new SplittableRandom(seed);
+      nextPiece = randomPiece();
+    }
+
+    @Override
+    protected int randomPiece() {
+      // State() draws a first piece before rand is set, replaced above
+      return rand == null ? 0 : rand.nextInt(N_PIECES);
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    String filter = "";
+    String jsonFile = null;
+    String baselineFile = null;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--json") && i + 1 < args.length) {
+        jsonFile = args[++i];
+      } else if (args[i].equals("--baseline") && i + 1 < args.length) {
+        baselineFile = args[++i];
+      } else {
+        filter = args[i];
+      }
+    }
+    State.initializeLegalMoves();
+
+    List<AdvancedState> low = new ArrayList<AdvancedState>();
+    List<AdvancedState> high = new ArrayList<AdvancedState>();
+    collectPositions(low, high);
+    AdvancedState[] lowBoards = low.toArray(new AdvancedState[0]);
+    AdvancedState[] highBoards = high.toArray(new AdvancedState[0]);
+    AdvancedState[] boards = new AdvancedState[2 * POSITIONS];
+    for (int i = 0; i < POSITIONS; i++) {
+      boards[2 * i] = lowBoards[i];
+      boards[2 * i + 1] = highBoards[i];
+    }
+    PlayerThread player = new PlayerThread("benchmark", SEED, WEIGHTS, new FitnessAccumulator());
+
+    List<Result> results = new ArrayList<Result>();
+    LinkedHashMap<String, Op> benchmarks = new LinkedHashMap<String, Op>();
+    benchmarks.put("makeMove.State", randomPlay(false));
+    benchmarks.put("makeMove.AdvancedState", randomPlay(true));
+    benchmarks.put("tryMove+undoMove.AdvancedState", i -> {
+      AdvancedState s = boards[i % boards.length];
+      int move = (i / boards.length) % s.legalMoves().length;
+      boolean placed = s.tryMove(move);
+      s.undoMove();
+      return placed ? 1 : 0;
+    });
+    benchmarks.put("clone.AdvancedState", i -> boards[i % boards.length].clone().getTurnNumber());
+    benchmarks.put("features.getNumHoles", i -> boards[i % boards.length].getNumHoles());
+    benchmarks.put("features.getBumpiness", i -> boards[i % boards.length].getBumpiness());
+    benchmarks.put("features.getWellSum", i -> boards[i % boards.length].getWellSum());
+    benchmarks.put("features.getHighestColumn", i -> boards[i % boards.length].getHighestColumn());
+    benchmarks.put("pickMove.noLookAhead", i -> {
+      AdvancedState s = lowBoards[i % lowBoards.length];
+      return player.pickMove(s, s.legalMoves());
+    });
+    benchmarks.put("pickMove.lookAhead", i -> {
+      AdvancedState s = highBoards[i % highBoards.length];
+      return player.pickMove(s, s.legalMoves());
+    });
+
+    for (String name : benchmarks.keySet()) {
+      if (name.contains(filter)) {
+        Result result = measure(name, benchmarks.get(name));
+        results.add(result);
+        System.out.println(String.format(Locale.ROOT, "%-32s %14.1f ops/s  +- %5.1f%%  %10.1f B/op", name, result.opsPerSec,
+            100 * result.error / result.opsPerSec, result.bytesPerOp));
+      }
+    }
+
+    if (baselineFile != null) {
+      compare(results, new String(Files.readAllBytes(Paths.get(baselineFile))));
+    }
+    if (jsonFile != null) {
+      PrintWriter out = new PrintWriter(new FileOutputStream(jsonFile));
+      out.println("[");
+      for (int i = 0; i < results.size(); i++) {
+        Result result = results.get(i);
+        // Locale.ROOT keeps a decimal point for JSON and compare()
+        out.println(String.format(Locale.ROOT, "  {\"name\":\"%s\",\"opsPerSec\":%.1f,\"error\":%.1f,\"bytesPerOp\":%.1f}%s",
+            result.name, result.opsPerSec, result.error, result.bytesPerOp, i + 1 < results.size() ? "," : ""));
+      }
+      out.println("]");
+      out.close();
+    }
+  }
+
+  // boards from seeded random play, split by whether pickMove looks ahead on
+  // them - random moves build up tall boards quickly
+  private static void collectPositions(List<AdvancedState> low, List<AdvancedState> high) {
+    Random random = new Random(SEED);
+    long seed = SEED;
+    while (low.size() < POSITIONS || high.size() < POSITIONS) {
+      AdvancedState s = new AdvancedState(seed++);
+      while (!s.hasLost()) {
+        List<AdvancedState> positions = s.getHighestColumn() > 10 ? high : low;
+        if (positions.size() < POSITIONS && random.nextInt(4) == 0) {
+          positions.add(s.clone());
+        }
+        s.makeMove(random.nextInt(s.legalMoves().length));
+      }
+    }
+  }
+
+  // placements of random seeded play, starting a new game when one is lost
+  private static Op randomPlay(boolean bitBoard) {
+    Random random = new Random(SEED);
+    State[] game = { null };
+    return i -> {
+      State s = game[0];
+      if (s == null || s.hasLost()) {
+        long seed = random.nextLong();
+        s = bitBoard ? new AdvancedState(seed) : new SeededState(seed);
+        game[0] = s;
+      }
+      s.makeMove(random.nextInt(s.legalMoves().length));
+      return s.getRowsCleared();
+    };
+  }
+
+  private static Result measure(String name, Op op) {
+    long thread = Thread.currentThread().getId();
+    double[] rates = new double[MEASUREMENT_ITERATIONS];
+    long measuredOps = 0;
+    long allocated = 0;
+    for (int iteration = 0; iteration < WARMUP_ITERATIONS + MEASUREMENT_ITERATIONS; iteration++) {
+      int i = 0;
+      long bytesBefore = THREADS.getThreadAllocatedBytes(thread);
+      long start = System.nanoTime();
+      long ops = 0;
+      long elapsed;
+      long result = 0;
+      do {
+        for (int k = 0; k < BATCH; k++) {
+          result += op.run(i++);
+        }
+        ops += BATCH;
+        elapsed = System.nanoTime() - start;
+      } while (elapsed < ITERATION_NANOS);
+      sink = result;
+      long bytes = THREADS.getThreadAllocatedBytes(thread) - bytesBefore;
+      if (iteration >= WARMUP_ITERATIONS) {
+        rates[iteration - WARMUP_ITERATIONS] = ops * 1e9 / elapsed;
+        measuredOps += ops;
+        allocated += bytes;
+      }
+    }
+
+    double mean = 0;
+    for (double rate : rates) {
+      mean += rate / rates.length;
+    }
+    double variance = 0;
+    for (double rate : rates) {
+      variance += (rate - mean) * (rate - mean) / (rates.length - 1);
+    }
+    return new Result(name, mean, Math.sqrt(variance), (double) allocated / measuredOps);
+  }
+
+  // prints the change in ops/sec and B/op against a file written with --json
+  private static void compare(List<Result> results, String baseline) {
+    Pattern entry = Pattern.compile(
+        "\"name\":\"([^\"]*)\",\"opsPerSec\":([0-9.eE+-]+),\"error\":[0-9.eE+-]+,\"bytesPerOp\":([0-9.eE+-]+)");
+    HashMap<String, double[]> base = new HashMap<String, double[]>();
+    Matcher matcher = entry.matcher(baseline);
+    while (matcher.find()) {
+      base.put(matcher.group(1),
+          new double[] { Double.parseDouble(matcher.group(2)), Double.parseDouble(matcher.group(3)) });
+    }
+    System.out.println();
+    System.out.println("Against baseline:");
+    for (Result result : results) {
+      double[] before = base.get(result.name);
+      if (before == null) {
+        System.out.println(String.format("%-32s not in baseline", result.name));
+      } else {
+        System.out.println(String.format(Locale.ROOT, "%-32s %+7.1f%% ops/s  %+10.1f B/op", result.name,
+            100 * (result.opsPerSec / before[0] - 1), result.bytesPerOp - before[1]));
+      }
+    }
+  }
+}
@@ -0,0 +1,198 @@
+import java.util.Random;
+
+// Board engine that keeps each row of the playfield as a bitmask - bit c of
+// rows[r] is set when the cell in column c of row r is filled. A full row is a
+// single compare against FULL_ROW and removing it is a single array shift.
+// The same cells are also kept per column in cols, bit r of cols[c] being row
+// r, so top and the per-column features are a bit count away. The int[][]
+// field of State is only rebuilt on demand by getField() so that TFrame and
+// State.draw() keep working unchanged.
+public class BitBoardState extends State {
+  public static final int FULL_ROW = (1 << COLS) - 1;
+
+  // Zobrist keys for boardHash() - a table per row for each 5-bit half of its
+  // mask (an empty half hashes to 0) and a key per piece to play
+  private static final int HALF_ROW_BITS = 5;
+  private static final long[][] ZOBRIST_ROW_LOW = new long[ROWS][1 << HALF_ROW_BITS];
+  private static final long[][] ZOBRIST_ROW_HIGH = new long[ROWS][1 << HALF_ROW_BITS];
+  public static final long[] ZOBRIST_PIECE = new long[N_PIECES];
+
+  // each row mask with its columns in reverse order
+  private static final int[] MIRRORED_ROW = new int[FULL_ROW + 1];
+
+  // deepest search the keys of searchKey() cover
+  public static final int MAX_SEARCH_DEPTH = 8;
+  // Zobrist keys for the rows cleared since the root of a search - a piece
+  // clears at most 4 - and for the remaining search depth
+  private static final long[] ZOBRIST_ROWS_CLEARED = new long[4 * (MAX_SEARCH_DEPTH + 1) + 1];
+  private static final long[] ZOBRIST_DEPTH = new long[MAX_SEARCH_DEPTH + 1];
+
+  static {
+    Random random = new Random(4701);
+    for (int r = 0; r < ROWS; r++) {
+      for (int k = 1; k < 1 << HALF_ROW_BITS; k++) {
+        ZOBRIST_ROW_LOW[r][k] = random.nextLong();
+        ZOBRIST_ROW_HIGH[r][k] = random.nextLong();
+      }
+    }
+    for (int i = 0; i < N_PIECES; i++) {
+      ZOBRIST_PIECE[i] = random.nextLong();
+    }
+    for (int i = 0; i < ZOBRIST_ROWS_CLEARED.length; i++) {
+      ZOBRIST_ROWS_CLEARED[i] = random.nextLong();
+    }
+    for (int i = 0; i < ZOBRIST_DEPTH.length; i++) {
+      ZOBRIST_DEPTH[i] = random.nextLong();
+    }
+    for (int row = 0; row <= FULL_ROW; row++) {
+      for (int c = 0; c < COLS; c++) {
+        if ((row & (1 << c)) != 0) {
+          MIRRORED_ROW[row] |= 1 << (COLS - 1 - c);
+        }
+      }
+    }
+  }
+
+  // one bitmask per row, bit c = column c
+  protected int[] rows = new int[ROWS];
+  // one bitmask per column, bit r = row r
+  protected int[] cols = new int[COLS];
+
+  @Override
+  public int[][] getField() {
+    for (int r = 0; r < ROWS; r++) {
+      int row = rows[r];
+      for (int c = 0; c < COLS; c++) {
+        field[r][c] = (row >>> c) & 1;
+      }
+    }
+    return field;
+  }
+
+  public int[] getRows() {
+    return rows;
+  }
+
+  public int[] getCols() {
+    return cols;
+  }
+
+  // Zobrist hash of the board contents - top and cols follow from the rows
+  public long boardHash() {
+    long hash = 0;
+    for (int r = 0; r < ROWS; r++) {
+      int row = rows[r];
+      hash ^= ZOBRIST_ROW_LOW[r][row & ((1 << HALF_ROW_BITS) - 1)] ^ ZOBRIST_ROW_HIGH[r][row >>> HALF_ROW_BITS];
+    }
+    return hash;
+  }
+
+  // transposition key of the board searched depth pieces deep with rowsCleared
+  // rows cleared since the root, the piece to play still has to be mixed in
+  public long searchKey(int rowsCleared, int depth) {
+    return boardHash() ^ ZOBRIST_ROWS_CLEARED[rowsCleared] ^ ZOBRIST_DEPTH[depth];
+  }
+
+  // whether the board is its own left-right mirror image. Mirrored moves then
+  // lead to mirrored boards, which all features score the same, and the next
+  // piece's mirror piece is worth the same as the piece itself.
+  public boolean isMirrorSymmetric() {
+    for (int r = 0; r < ROWS; r++) {
+      if (MIRRORED_ROW[rows[r]] != rows[r]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // whether move of the next piece only repeats a lower move's mirror image on
+  // a board that isMirrorSymmetric()
+  public boolean isMirrorDuplicate(int move, boolean symmetric) {
+    if (!symmetric) {
+      return false;
+    }
+    int mirror = placementMirrorMove[placementOf(nextPiece, move)];
+    return mirror >= 0 && mirror < move;
+  }
+
+  // row the bottom of placement p comes to rest on
+  public int landingRow(int p) {
+    int slot = placementSlot[p];
+    int span = p * PIECE_SPAN;
+    // height if the first column makes contact
+    int height = top[slot] - placementBottom[span];
+    // for each column beyond the first in the piece
+    for (int c = 1; c < placementWidth[p]; c++) {
+      height = Math.max(height, top[slot + c] - placementBottom[span + c]);
+    }
+    return height;
+  }
+
+  // whether placement p resting on row height completes any row - the piece
+  // has to fit below ROWS
+  public boolean clearsRows(int p, int height) {
+    int span = p * PIECE_SPAN;
+    for (int k = 0; k < placementHeight[p]; k++) {
+      if ((rows[height + k] | placementRowMask[span + k]) == FULL_ROW) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // returns false if you lose - true otherwise
+  @Override
+  public boolean makeMove(int orient, int slot) {
+    turn++;
+    int p = placementOf(nextPiece, orient, slot);
+    int span = p * PIECE_SPAN;
+    int width = placementWidth[p];
+    int pieceHeight = placementHeight[p];
+
+    int height = landingRow(p);
+
+    // check if game ended
+    if (height + pieceHeight >= ROWS) {
+      lost = true;
+      return false;
+    }
+
+    // drop the piece's row masks in and adjust top
+    for (int k = 0; k < pieceHeight; k++) {
+      rows[height + k] |= placementRowMask[span + k];
+    }
+    for (int c = 0; c < width; c++) {
+      int bottom = height + placementBottom[span + c];
+      top[slot + c] = height + placementTop[span + c];
+      cols[slot + c] |= ((1 << (top[slot + c] - bottom)) - 1) << bottom;
+    }
+
+    // check for full rows - starting at the top of the piece
+    int rowsCleared = 0;
+    for (int r = height + pieceHeight - 1; r >= height; r--) {
+      if (rows[r] == FULL_ROW) {
+        rowsCleared++;
+        // slide everything above down by one row
+        System.arraycopy(rows, r + 1, rows, r, ROWS - 1 - r);
+        rows[ROWS - 1] = 0;
+        int below = (1 << r) - 1;
+        for (int c = 0; c < COLS; c++) {
+          cols[c] = (cols[c] & below) | ((cols[c] >>> (r + 1)) << r);
+        }
+      }
+    }
+
+    if (rowsCleared > 0) {
+      setRowsCleared(getRowsCleared() + rowsCleared);
+      for (int c = 0; c < COLS; c++) {
+        top[c] = 32 - Integer.numberOfLeadingZeros(cols[c]);
+      }
+    }
+
+    // pick a new piece
+    nextPiece = randomPiece();
+
+    return true;
+  }
+
+}
@@ -0,0 +1,256 @@
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Binary snapshot of a GA run - the last finished iteration, the master seed,
+// Constant.SEEDS and every Person's weights and fitness statistics, and in
+// island mode every island's own iteration, members and the migrants still
+// on their way to it. The snapshot is encoded
+// on the GA thread, which only takes microseconds, and written by a single
+// background thread to a temporary file that is synced and then moved over
+// the checkpoint, so a crash leaves either the old or the new checkpoint.
+public class Checkpoint {
+
+  private static final int MAGIC = 0x54434b31;
+  // version 2 has no islands
+  private static final int VERSION = 3;
+
+  private static final ExecutorService writer = Executors.newSingleThreadExecutor(task -> {
+    Thread thread = new Thread(task, "checkpoint writer");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final int iteration;
+  private final long masterSeed;
+  private final long[] seeds;
+  private final ArrayList<Person> population;
+  private final List<Island> islands;
+
+  private Checkpoint(int iteration, long masterSeed, long[] seeds, ArrayList<Person> population,
+      List<Island> islands) {
+    this.iteration = iteration;
+    this.masterSeed = masterSeed;
+    this.seeds = seeds;
+    this.population = population;
+    this.islands = islands;
+  }
+
+  // an island of the island mode - the last iteration it finished, its
+  // members and the migrants sent to it that it has not taken in yet
+  public static class Island {
+    private final int iteration;
+    private final ArrayList<Person> members;
+    private final ArrayList<Person> migrants;
+
+    public Island(int iteration, List<Person> members, List<Person> migrants) {
+      this.iteration = iteration;
+      this.members = new ArrayList<Person>(members);
+      this.migrants = new ArrayList<Person>(migrants);
+    }
+
+    public int getIteration() {
+      return iteration;
+    }
+
+    public ArrayList<Person> getMembers() {
+      return members;
+    }
+
+    public ArrayList<Person> getMigrants() {
+      return migrants;
+    }
+  }
+
+  // last iteration finished before the checkpoint, -1 for the initial
+  // population - in island mode the last one every island has finished
+  public int getIteration() {
+    return iteration;
+  }
+
+  public long getMasterSeed() {
+    return masterSeed;
+  }
+
+  public long[] getSeeds() {
+    return seeds;
+  }
+
+  public ArrayList<Person> getPopulation() {
+    return population;
+  }
+
+  // empty unless saved in island mode
+  public List<Island> getIslands() {
+    return islands;
+  }
+
+  // snapshots population, masterSeed, Constant.SEEDS and islands, null outside
+  // island mode, now and writes them to fileName in the background. Snapshots
+  // are written in the order they are taken.
+  public static void saveAsync(String fileName, int iteration, long masterSeed, List<Person> population,
+      List<Island> islands) {
+    byte[] snapshot;
+    try {
+      snapshot = encode(iteration, masterSeed, population, islands);
+    } catch (IOException e) {
+      System.out.println("Couldn't save checkpoint: " + e.getMessage());
+      return;
+    }
+    writer.execute(() -> write(new File(fileName), snapshot));
+  }
+
+  // waits for the checkpoints still being written
+  public static void finishWrites() {
+    writer.shutdown();
+    try {
+      writer.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      System.out.println("ERROR: Thread execution interrupted");
+    }
+  }
+
+  public static Checkpoint load(String fileName) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)))) {
+      int version = in.readInt() == MAGIC ? in.readInt() : -1;
+      if (version < 2 || version > VERSION) {
+        throw new IOException(fileName + " is not a checkpoint");
+      }
+      int iteration = in.readInt();
+      long masterSeed = in.readLong();
+      long[] seeds = new long[in.readInt()];
+      for (int i = 0; i < seeds.length; i++) {
+        seeds[i] = in.readLong();
+      }
+      ArrayList<Person> persons = readPersons(in, new ArrayList<Person>());
+      ArrayList<Person> population = new ArrayList<Person>(persons);
+      List<Island> islands = new ArrayList<Island>();
+      if (version >= 3) {
+        // the islands refer to the population and then to the members and
+        // migrants outside it
+        readPersons(in, persons);
+        int numIslands = in.readInt();
+        for (int k = 0; k < numIslands; k++) {
+          int islandIteration = in.readInt();
+          List<Person> members = readReferences(in, persons);
+          islands.add(new Island(islandIteration, members, readReferences(in, persons)));
+        }
+      }
+      return new Checkpoint(iteration, masterSeed, seeds, population, islands);
+    }
+  }
+
+  private static ArrayList<Person> readPersons(DataInputStream in, ArrayList<Person> persons) throws IOException {
+    int size = in.readInt();
+    for (int p = 0; p < size; p++) {
+      double[] weights = new double[in.readInt()];
+      for (int i = 0; i < weights.length; i++) {
+        weights[i] = in.readDouble();
+      }
+      persons.add(new Person(weights, FitnessAccumulator.read(in)));
+    }
+    return persons;
+  }
+
+  private static List<Person> readReferences(DataInputStream in, List<Person> persons) throws IOException {
+    List<Person> references = new ArrayList<Person>();
+    int size = in.readInt();
+    for (int i = 0; i < size; i++) {
+      references.add(persons.get(in.readInt()));
+    }
+    return references;
+  }
+
+  private static byte[] encode(int iteration, long masterSeed, List<Person> population, List<Island> islands)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(iteration);
+    out.writeLong(masterSeed);
+    out.writeInt(Constant.SEEDS.length);
+    for (long seed : Constant.SEEDS) {
+      out.writeLong(seed);
+    }
+    // a Person on several islands or in a migrant queue is written once, so
+    // it is still one Person when resumed
+    IdentityHashMap<Person, Integer> index = new IdentityHashMap<Person, Integer>();
+    for (int p = 0; p < population.size(); p++) {
+      index.putIfAbsent(population.get(p), p);
+    }
+    List<Person> others = new ArrayList<Person>();
+    List<Island> saved = islands == null ? new ArrayList<Island>() : islands;
+    for (Island island : saved) {
+      for (List<Person> persons : List.of(island.members, island.migrants)) {
+        for (Person person : persons) {
+          if (!index.containsKey(person)) {
+            index.put(person, population.size() + others.size());
+            others.add(person);
+          }
+        }
+      }
+    }
+    writePersons(out, population);
+    writePersons(out, others);
+    out.writeInt(saved.size());
+    for (Island island : saved) {
+      out.writeInt(island.iteration);
+      writeReferences(out, island.members, index);
+      writeReferences(out, island.migrants, index);
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private static void writePersons(DataOutputStream out, List<Person> persons) throws IOException {
+    out.writeInt(persons.size());
+    for (Person person : persons) {
+      out.writeInt(person.weights.length);
+      for (double weight : person.weights) {
+        out.writeDouble(weight);
+      }
+      person.getFitness().write(out);
+    }
+  }
+
+  private static void writeReferences(DataOutputStream out, List<Person> persons,
+      IdentityHashMap<Person, Integer> index) throws IOException {
+    out.writeInt(persons.size());
+    for (Person person : persons) {
+      out.writeInt(index.get(person));
+    }
+  }
+
+  private static void write(File file, byte[] snapshot) {
+    File temp = new File(file.getPath() + ".tmp");
+    try {
+      try (FileOutputStream out = new FileOutputStream(temp)) {
+        out.write(snapshot);
+        out.getFD().sync();
+      }
+      try {
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      System.out.println("Couldn't save checkpoint: " + e.getMessage());
+    }
+  }
+}
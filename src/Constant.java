@@ -1,4 +1,4 @@
-import java.util.Random;
+import java.util.SplittableRandom;
 
 public class Constant {
   public static final int POPULATION_SIZE = 50;
@@ -7,6 +7,72 @@ public class Constant {
   public static final int NUMB_FEATURES = 5;
   public static final int NUMB_ITERATIONS = 20000;
   public static final int NUMB_GAMES_PER_UPDATE = 5;
+  // steady-state GA - each finished child replaces the worst member at once
+  // instead of waiting for the rest of its generation
+  public static final boolean STEADY_STATE = false;
+  // island model - the population is split into NUMB_ISLANDS islands of
+  // POPULATION_SIZE / NUMB_ISLANDS, the remainder going one each to the first
+  // islands, that evolve on their own threads and send their MIGRANTS best to
+  // the next island every MIGRATION_INTERVAL iterations, 1 keeps a single
+  // population. Between 1 and POPULATION_SIZE.
+  public static final int NUMB_ISLANDS = 1;
+  public static final int MIGRATION_INTERVAL = 10;
+  public static final int MIGRANTS = 2;
+  // games end after this many pieces even if not lost, 0 plays them out. The
+  // cap also bounds the rows a game can still clear, which lets the games of
+  // children that can no longer survive refinePopulation be cancelled.
+  public static final int MAX_PIECES_PER_GAME = 1000000;
+
+  // beam search in PlayerThread - look-ahead BEAM_DEPTH pieces from only the
+  // BEAM_WIDTH best moves by one-ply fitness, 0 width keeps the one-ply look-ahead
+  public static final int BEAM_WIDTH = 0;
+  public static final int BEAM_DEPTH = 2;
+
+  // expectimax search in PlayerThread - EXPECTIMAX_DEPTH placements counting the
+  // root move, 0 turns it off. With a MOVE_TIME_BUDGET_MS above 0 it deepens
+  // iteratively up to that depth while the budget lasts.
+  public static final int EXPECTIMAX_DEPTH = 0;
+  public static final long MOVE_TIME_BUDGET_MS = 0;
+
+  // spread the root moves of every look-ahead decision over the fork/join
+  // pool. Cuts the latency of a decision for interactive play, but games of
+  // the GA already keep every core busy, so it is off by default.
+  public static final boolean PARALLEL_SEARCH = false;
+
+  // memory cap of each game's look-ahead transposition cache, 0 turns it off.
+  // Boards after different root moves almost never repeat in the one-ply
+  // look-ahead, so it only pays for itself in deeper searches.
+  public static final long TRANSPOSITION_CACHE_BYTES = 0;
+
+  // results of finished games kept in memory so that the same weights never
+  // replay a seed, 0 turns the cache off. With a file name the results are
+  // also saved there and reused by the next run with the same SEEDS.
+  public static final int FITNESS_CACHE_ENTRIES = 1 << 20;
+  public static final String FITNESS_CACHE_FILE = null;
+
+  // games deal their pieces from a PieceTape of their seed, computed once,
+  // instead of drawing them. Tapes larger than PIECE_TAPE_MAPPED_BYTES are
+  // memory-mapped, at 3 bits a piece 16MB hold about 45 million pieces.
+  public static final boolean PIECE_TAPES = true;
+  public static final long PIECE_TAPE_MAPPED_BYTES = 1 << 24;
+
+  // binary checkpoint written after every iteration for --resume, null for none
+  public static final String CHECKPOINT_FILE = "checkpoint.bin";
+
+  // JSON lines log with a record per game and per iteration, null for none.
+  // Records queue up to LOG_QUEUE_CAPACITY for the writer thread and are
+  // dropped beyond that rather than holding up a game.
+  public static final String LOG_FILE = "games.jsonl";
+  public static final int LOG_QUEUE_CAPACITY = 1 << 16;
+
+  // run every game on its own virtual thread (Java 21) instead of the
+  // core-sized pool. Games never block, so this saves scheduling overhead
+  // at most and is off by default.
+  public static final boolean VIRTUAL_THREADS = false;
+
+  // weights PlayerThread.main plays with
+  public static final double[] PLAY_WEIGHTS = { -4.856393412802155, 3.5035969996231951, -5.696079737154641,
+      -2.880295692564255, -4.856393412802155 };
 
   // Indices of features
   public static final int LANDING_HEIGHT = 0;
@@ -17,6 +83,9 @@ public class Constant {
 
   public static final int[] FEATURE_TYPE = { -1, 1, -1, -1, -1 };
 
-  public static final long[] SEEDS = { (new Random()).nextLong(), (new Random()).nextLong(), (new Random()).nextLong(),
-      (new Random()).nextLong(), (new Random()).nextLong() };
+  // every random draw of a run follows from MASTER_SEED - the game SEEDS and
+  // the generators of the GA operators. Pass a logged value as
+  // -Dtetris.seed=... to repeat a run.
+  public static final long MASTER_SEED = Long.getLong("tetris.seed", new SplittableRandom().nextLong());
+  public static final long[] SEEDS = new SplittableRandom(MASTER_SEED).longs(5).toArray();
 }
@@ -0,0 +1,215 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Coordinator side of distributed evaluation - games are queued as (weights,
+// seed) jobs and streamed to the EvaluationWorker JVMs that connect to the
+// port. Each worker keeps as many jobs in flight as it runs games at once,
+// and the jobs of a worker that disconnects go back to the front of the queue.
+//
+// Protocol, all through DataStreams:
+//   worker -> coordinator  int games run at once
+//   coordinator -> worker  MAGIC, settings (see FitnessCache), then per job
+//                          long id, long seed, int n, n doubles of weights
+//   worker -> coordinator  per job long id, int rows cleared
+public class EvaluationCoordinator {
+
+  public static final int MAGIC = 0x54444731;
+  // a worker that has not said how many games it runs by then is dropped
+  private static final int HANDSHAKE_TIMEOUT_MS = 10000;
+
+  private static EvaluationCoordinator instance;
+
+  private final ServerSocket server;
+  private final LinkedBlockingDeque<Job> queue = new LinkedBlockingDeque<Job>();
+  private final AtomicLong nextId = new AtomicLong();
+  private final AtomicLong workers = new AtomicLong();
+
+  // coordinator the GA evaluates through, null evaluates in this JVM
+  public static EvaluationCoordinator getInstance() {
+    return instance;
+  }
+
+  public static synchronized EvaluationCoordinator start(int port) throws IOException {
+    if (instance == null) {
+      instance = new EvaluationCoordinator(port);
+    }
+    return instance;
+  }
+
+  private EvaluationCoordinator(int port) throws IOException {
+    server = new ServerSocket(port);
+    Thread acceptor = new Thread(this::acceptWorkers, "coordinator");
+    acceptor.setDaemon(true);
+    acceptor.start();
+    System.out.println("Coordinator waiting for workers on port " + server.getLocalPort());
+  }
+
+  // rows cleared by weights playing seed, once some worker has played it
+  public CompletableFuture<Integer> submit(double[] weights, long seed) {
+    Job job = new Job(nextId.getAndIncrement(), weights, seed);
+    queue.add(job);
+    return job.result;
+  }
+
+  public long getWorkers() {
+    return workers.get();
+  }
+
+  private void acceptWorkers() {
+    while (true) {
+      try {
+        new WorkerConnection(server.accept()).start();
+      } catch (IOException e) {
+        System.out.println("ERROR: Coordinator failed to accept a worker: " + e.getMessage());
+      }
+    }
+  }
+
+  private static class Job {
+    private final long id;
+    private final double[] weights;
+    private final long seed;
+    private final CompletableFuture<Integer> result = new CompletableFuture<Integer>();
+
+    Job(long id, double[] weights, long seed) {
+      this.id = id;
+      this.weights = weights;
+      this.seed = seed;
+    }
+  }
+
+  // one connected worker - a thread that shakes hands and then reads back
+  // results, and a thread sending jobs while the worker has free slots
+  private class WorkerConnection {
+    private final Socket socket;
+    private final ConcurrentHashMap<Long, Job> inFlight = new ConcurrentHashMap<Long, Job>();
+    private Semaphore slots;
+    private DataInputStream in;
+    private DataOutputStream out;
+    private volatile boolean dead = false;
+
+    WorkerConnection(Socket socket) {
+      this.socket = socket;
+    }
+
+    void start() {
+      Thread receiver = new Thread(this::run, "coordinator receive " + socket.getRemoteSocketAddress());
+      receiver.setDaemon(true);
+      receiver.start();
+    }
+
+    // off the accept thread, so a slow worker does not hold up the others
+    private void run() {
+      try {
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        slots = new Semaphore(Math.max(1, in.readInt()));
+        out.writeInt(MAGIC);
+        FitnessCache.writeSettings(out);
+        out.flush();
+        // results take as long as the games
+        socket.setSoTimeout(0);
+      } catch (IOException e) {
+        System.out.println("ERROR: Handshake with " + socket.getRemoteSocketAddress() + " failed: " + e);
+        try {
+          socket.close();
+        } catch (IOException ignored) {
+        }
+        return;
+      }
+      System.out.println("Worker " + socket.getRemoteSocketAddress() + " joined, " + workers.incrementAndGet()
+          + " connected");
+
+      Thread sender = new Thread(this::sendJobs, "coordinator send " + socket.getRemoteSocketAddress());
+      sender.setDaemon(true);
+      sender.start();
+      receiveResults();
+    }
+
+    private void sendJobs() {
+      try {
+        while (!dead) {
+          // anything written so far goes out before waiting
+          if (!slots.tryAcquire()) {
+            out.flush();
+            slots.acquire();
+          }
+          Job job = queue.poll();
+          if (job == null) {
+            out.flush();
+            job = queue.take();
+          }
+          inFlight.put(job.id, job);
+          // fail() marks the worker dead before handing back inFlight
+          if (dead) {
+            if (inFlight.remove(job.id) != null) {
+              queue.addFirst(job);
+            }
+            return;
+          }
+          out.writeLong(job.id);
+          out.writeLong(job.seed);
+          out.writeInt(job.weights.length);
+          for (double weight : job.weights) {
+            out.writeDouble(weight);
+          }
+        }
+      } catch (IOException e) {
+        fail(e);
+      } catch (InterruptedException e) {
+        fail(new IOException(e));
+      }
+    }
+
+    private void receiveResults() {
+      try {
+        while (!dead) {
+          long id = in.readLong();
+          int rowsCleared = in.readInt();
+          Job job = inFlight.remove(id);
+          slots.release();
+          if (job != null) {
+            job.result.complete(rowsCleared);
+          }
+        }
+      } catch (IOException e) {
+        fail(e);
+      }
+    }
+
+    // hands the jobs of the worker back to the queue
+    private synchronized void fail(IOException e) {
+      if (dead) {
+        return;
+      }
+      dead = true;
+      System.out.println("Worker " + socket.getRemoteSocketAddress() + " lost (" + e + "), "
+          + inFlight.size() + " jobs re-queued, " + workers.decrementAndGet() + " connected");
+      // removed one by one, so a job the sender is adding is handed back once
+      for (Long id : inFlight.keySet()) {
+        Job job = inFlight.remove(id);
+        if (job != null) {
+          queue.addFirst(job);
+        }
+      }
+      try {
+        socket.close();
+      } catch (IOException ignored) {
+      }
+      // wake the sender if it is waiting for a slot
+      slots.release();
+    }
+  }
+}
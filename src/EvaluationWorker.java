@@ -0,0 +1,97 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Worker side of distributed evaluation - connects to an EvaluationCoordinator,
+// plays the games it is sent on a pool of threads and sends back the rows
+// cleared. Run with: java EvaluationWorker host port [games at once]
+public class EvaluationWorker {
+
+  private final DataInputStream in;
+  private final DataOutputStream out;
+  private final ExecutorService games;
+
+  public EvaluationWorker(Socket socket, int threads) throws IOException {
+    socket.setTcpNoDelay(true);
+    in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    games = Executors.newFixedThreadPool(threads);
+    out.writeInt(threads);
+    out.flush();
+    if (in.readInt() != EvaluationCoordinator.MAGIC || !FitnessCache.readSettings(in)) {
+      throw new IOException("coordinator runs with other settings");
+    }
+  }
+
+  public static void main(String[] args) {
+    if (args.length < 2) {
+      System.out.println("Usage: java EvaluationWorker host port [games at once]");
+      System.exit(1);
+    }
+    State.initializeLegalMoves();
+    SearchMetrics.registerMBean();
+    AsyncLogger.open(logFile(), false);
+    int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+    try {
+      new EvaluationWorker(new Socket(args[0], Integer.parseInt(args[1])), threads).serve();
+    } catch (IOException e) {
+      System.out.println("ERROR: Lost coordinator: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  // plays jobs until the coordinator hangs up
+  public void serve() throws IOException {
+    try {
+      while (true) {
+        long id = in.readLong();
+        long seed = in.readLong();
+        double[] weights = new double[in.readInt()];
+        for (int i = 0; i < weights.length; i++) {
+          weights[i] = in.readDouble();
+        }
+        games.execute(() -> play(id, seed, weights));
+      }
+    } catch (EOFException e) {
+      System.out.println("Coordinator closed the connection");
+    } finally {
+      games.shutdownNow();
+      AsyncLogger.getInstance().close();
+    }
+  }
+
+  // Constant.LOG_FILE with the process id before its extension, so that
+  // workers sharing a directory with the coordinator keep their own logs
+  private static String logFile() {
+    if (Constant.LOG_FILE == null) {
+      return null;
+    }
+    String suffix = ".worker-" + ProcessHandle.current().pid();
+    int dot = Constant.LOG_FILE.lastIndexOf('.');
+    if (dot <= 0) {
+      return Constant.LOG_FILE + suffix;
+    }
+    return Constant.LOG_FILE.substring(0, dot) + suffix + Constant.LOG_FILE.substring(dot);
+  }
+
+  private void play(long id, long seed, double[] weights) {
+    PlayerThread game = new PlayerThread("job " + id, seed, weights, new FitnessAccumulator());
+    int rowsCleared = game.call();
+    try {
+      synchronized (out) {
+        out.writeLong(id);
+        out.writeInt(rowsCleared);
+        out.flush();
+      }
+    } catch (IOException e) {
+      System.out.println("ERROR: Lost coordinator: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,188 @@
+// Expectimax search - the root move is followed by depth - 1 chance levels,
+// each averaging over the 7 equally likely next pieces the best value of the
+// moves for that piece, with boards scored by Fitness.computeFitness. Given a
+// time budget the search deepens iteratively from depth 1 and plays the best
+// move of the deepest search that finished in time.
+public class ExpectimaxPicker implements MovePicker {
+
+  // value of a piece that can not be placed without losing - below anything the
+  // features can score
+  private static final double LOSS = -1e9;
+  // chance nodes searched between two looks at the clock
+  private static final int CLOCK_INTERVAL = 64;
+
+  private final double[] weights;
+  private final int maxDepth;
+  private final long timeBudgetNanos;
+  // chance node values, created with the first decision
+  private TranspositionCache cache;
+
+  private long deadline;
+  private boolean timedOut;
+  private long nodes = 0;
+  private long savedEvaluations = 0;
+  private int completedDepth = 0;
+
+  // timeBudgetMillis of 0 always searches maxDepth deep
+  public ExpectimaxPicker(double[] weights, int maxDepth, long timeBudgetMillis) {
+    if (maxDepth < 1 || maxDepth > AdvancedState.MAX_SEARCH_DEPTH + 1) {
+      throw new IllegalArgumentException("Invalid expectimax depth " + maxDepth);
+    }
+    this.weights = weights;
+    this.maxDepth = maxDepth;
+    this.timeBudgetNanos = timeBudgetMillis * 1000000;
+  }
+
+  public int pickMove(AdvancedState state, int[][] legalMoves) {
+    if (cache == null && Constant.TRANSPOSITION_CACHE_BYTES > 0) {
+      cache = new TranspositionCache(Constant.TRANSPOSITION_CACHE_BYTES);
+    }
+    // depth 1 only scores the root moves
+    if (maxDepth > 1 && state.getMetrics() != null) {
+      state.getMetrics().countLookAhead();
+    }
+    timedOut = false;
+    if (timeBudgetNanos <= 0) {
+      completedDepth = maxDepth;
+      return searchRoot(state, legalMoves, maxDepth);
+    }
+
+    deadline = System.nanoTime() + timeBudgetNanos;
+    // depth 1 has no chance nodes and always finishes
+    int bestMove = searchRoot(state, legalMoves, 1);
+    completedDepth = 1;
+    for (int depth = 2; depth <= maxDepth; depth++) {
+      int move = searchRoot(state, legalMoves, depth);
+      if (timedOut) {
+        break;
+      }
+      bestMove = move;
+      completedDepth = depth;
+    }
+    return bestMove;
+  }
+
+  private int searchRoot(AdvancedState state, int[][] legalMoves, int depth) {
+    double bestFitness = -Double.MAX_VALUE;
+    int bestMove = 0;
+    boolean symmetric = state.isMirrorSymmetric();
+    for (int move = 0; move < legalMoves.length; move++) {
+      if (state.isMirrorDuplicate(move, symmetric)) {
+        savedEvaluations++;
+        continue;
+      }
+      int landingHeight = Fitness.landingHeight(state, move);
+      int rowsBefore = state.getRowsCleared();
+      double fitness = Double.NaN;
+      if (state.tryMove(move)) {
+        int rowsCleared = state.getRowsCleared() - rowsBefore;
+        if (depth == 1) {
+          fitness = Fitness.computeFitness(weights, state, landingHeight, rowsCleared);
+        } else {
+          fitness = expectedFitness(state, depth - 1, rowsCleared);
+        }
+      }
+      state.undoMove();
+      if (timedOut) {
+        break;
+      }
+      if (fitness > bestFitness) {
+        bestFitness = fitness;
+        bestMove = move;
+      }
+    }
+    return bestMove;
+  }
+
+  // average over the next piece of the best value reachable depth pieces ahead
+  private double expectedFitness(AdvancedState state, int depth, int rowsCleared) {
+    nodes++;
+    if (timeBudgetNanos > 0 && nodes % CLOCK_INTERVAL == 0 && System.nanoTime() > deadline) {
+      timedOut = true;
+    }
+    if (timedOut) {
+      return 0;
+    }
+
+    long boardKey = 0;
+    if (cache != null) {
+      boardKey = state.searchKey(rowsCleared, depth);
+    }
+    // the last level only needs the best move of each piece, so branch and bound
+    boolean bound = depth == 1 && Fitness.canBound(weights);
+    boolean symmetric = state.isMirrorSymmetric();
+    double totalFitness = 0;
+    double bestFitness = LOSS;
+    for (int i = 0; i < AdvancedState.N_PIECES; i++) {
+      if (symmetric && AdvancedState.pieceMirror[i] == i - 1) {
+        // same as the previous piece, its mirror image
+        savedEvaluations += AdvancedState.legalMoves[i].length;
+        totalFitness += bestFitness;
+        continue;
+      }
+      long key = boardKey ^ AdvancedState.ZOBRIST_PIECE[i];
+      if (cache != null) {
+        bestFitness = cache.get(key);
+        if (!Double.isNaN(bestFitness)) {
+          totalFitness += bestFitness;
+          continue;
+        }
+      }
+      state.setNextPiece(i);
+
+      bestFitness = LOSS;
+      boolean placed = false;
+      for (int move = 0; move < state.legalMoves().length; move++) {
+        if (state.isMirrorDuplicate(move, symmetric)) {
+          savedEvaluations++;
+          continue;
+        }
+        if (bound && placed && Fitness.fitnessUpperBound(weights, state, move, rowsCleared) <= bestFitness) {
+          continue;
+        }
+        int landingHeight = Fitness.landingHeight(state, move);
+        int rowsBefore = state.getRowsCleared();
+        if (state.tryMove(move)) {
+          int rowsEliminated = state.getRowsCleared() - rowsBefore + rowsCleared;
+          double fitness;
+          if (depth == 1) {
+            fitness = Fitness.computeFitness(weights, state, landingHeight, rowsEliminated);
+          } else {
+            fitness = expectedFitness(state, depth - 1, rowsEliminated);
+          }
+          bestFitness = Math.max(bestFitness, fitness);
+          placed = true;
+        }
+        state.undoMove();
+      }
+
+      if (timedOut) {
+        return 0;
+      }
+      if (cache != null) {
+        cache.put(key, bestFitness);
+      }
+      totalFitness += bestFitness;
+    }
+    return totalFitness / AdvancedState.N_PIECES;
+  }
+
+  // chance nodes searched so far
+  public long getNodes() {
+    return nodes;
+  }
+
+  // move evaluations skipped as mirror images of other moves
+  public long getSavedEvaluations() {
+    return savedEvaluations;
+  }
+
+  // depth of the search the last move came from
+  public int getCompletedDepth() {
+    return completedDepth;
+  }
+
+  public TranspositionCache getCache() {
+    return cache;
+  }
+}
@@ -1,4 +1,4 @@
-import java.util.Random;
+import java.util.SplittableRandom;
 
 public class Fitness {
 
@@ -11,22 +11,102 @@ public class Fitness {
         return ans;
     }
 
-    public static int randomInt(int range) {
-        Random random = new Random();
+    public static int randomInt(SplittableRandom random, int range) {
         return random.nextInt(range);
     }
 
-    public static boolean flipCoin() {
-        return randomInt(2) == 0;
+    public static boolean flipCoin(SplittableRandom random) {
+        return randomInt(random, 2) == 0;
     }
 
-    public static double randomReal() {
-        Random random = new Random();
-        if (flipCoin()) {
+    public static double randomReal(SplittableRandom random) {
+        if (random.nextInt(2) == 0) {
             return random.nextDouble();
         } else {
             return -random.nextDouble();
         }
     }
 
+    /** Landing height of a move, must be taken before the move is played */
+    public static int landingHeight(AdvancedState state, int move) {
+        int p = AdvancedState.placementOf(state.getNextPiece(), move);
+        int slot = AdvancedState.placementSlot[p];
+        int pieceWidth = AdvancedState.placementWidth[p];
+        int pieceHeight = AdvancedState.placementHeight[p];
+        return arrayMax(state.top, slot, slot + pieceWidth) + pieceHeight / 2;
+    }
+
+    /** Fitness of a state right after a move played in place with tryMove() */
+    public static double computeFitness(double[] weights, AdvancedState state, int landingHeight,
+            int rowsEliminated) {
+        SearchMetrics metrics = state.getMetrics();
+        if (metrics != null) {
+            metrics.countFeatureEvaluation();
+        }
+        int bumpiness = state.getBumpiness();
+        int numHoles = state.getNumHoles();
+        int wellSum = state.getWellSum();
+
+        double fitness = weights[Constant.LANDING_HEIGHT] * landingHeight
+                + weights[Constant.ROW_ELIMINATED] * rowsEliminated + weights[Constant.NUM_HOLES] * numHoles
+                + weights[Constant.BUMPINESS] * bumpiness + weights[Constant.WELL_SUM] * wellSum;
+
+        return fitness;
+    }
+
+    /**
+     * Optimistic fitness of a move before it is played, for branch and bound.
+     * Without cleared rows landing height, rows eliminated, holes and bumpiness
+     * follow exactly from the placement table, and the well sum can only be
+     * bounded below by the wells of the columns the piece does not touch. With a
+     * well weight of the sign FEATURE_TYPE asks for that bounds the fitness from
+     * above - the sum is evaluated in the same order as computeFitness so
+     * rounding keeps it an upper bound. NaN when the move clears rows or loses.
+     */
+    public static double fitnessUpperBound(double[] weights, AdvancedState state, int move, int rowsCleared) {
+        int p = AdvancedState.placementOf(state.getNextPiece(), move);
+        int span = p * AdvancedState.PIECE_SPAN;
+        int slot = AdvancedState.placementSlot[p];
+        int end = slot + AdvancedState.placementWidth[p];
+        int height = state.landingRow(p);
+        if (height + AdvancedState.placementHeight[p] >= AdvancedState.ROWS || state.clearsRows(p, height)) {
+            return Double.NaN;
+        }
+
+        int[] top = state.getTop();
+        int first = Math.max(slot - 1, 0);
+        int last = Math.min(end, AdvancedState.COLS - 1);
+        int holes = 0;
+        for (int c = slot; c < end; c++) {
+            holes += height + AdvancedState.placementBottom[span + c - slot] - top[c];
+        }
+        int bumpiness = state.getBumpiness();
+        for (int c = first; c < last; c++) {
+            bumpiness -= Math.abs(top[c] - top[c + 1]);
+            bumpiness += Math.abs(topAfter(top, p, height, c) - topAfter(top, p, height, c + 1));
+        }
+        int numHoles = state.getNumHoles() + holes * 10;
+        int wellSum = state.getWellSumExcept(first, last);
+
+        double fitness = weights[Constant.LANDING_HEIGHT] * landingHeight(state, move)
+                + weights[Constant.ROW_ELIMINATED] * rowsCleared + weights[Constant.NUM_HOLES] * numHoles
+                + weights[Constant.BUMPINESS] * bumpiness + weights[Constant.WELL_SUM] * wellSum;
+
+        return fitness;
+    }
+
+    /** Top of column c once placement p rests on row height */
+    private static int topAfter(int[] top, int p, int height, int c) {
+        int i = c - AdvancedState.placementSlot[p];
+        if (i < 0 || i >= AdvancedState.placementWidth[p]) {
+            return top[c];
+        }
+        return height + AdvancedState.placementTop[p * AdvancedState.PIECE_SPAN + i];
+    }
+
+    /** Whether fitnessUpperBound holds for these weights */
+    public static boolean canBound(double[] weights) {
+        return Constant.FEATURE_TYPE[Constant.WELL_SUM] < 0 && weights[Constant.WELL_SUM] <= 0;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,105 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Running statistics of the game results of a Person. Games add their rows
+// cleared concurrently without locking. Reads are O(1) and are only exact once
+// the games have finished, which is when the GA sorts and logs.
+public class FitnessAccumulator {
+
+  private final LongAdder sum = new LongAdder();
+  private final LongAdder sumOfSquares = new LongAdder();
+  private final LongAdder count = new LongAdder();
+  private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+  private final LongAccumulator max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+  // see whenComplete
+  private volatile long expectedGames = Long.MAX_VALUE;
+  private final CompletableFuture<Void> completion = new CompletableFuture<Void>();
+
+  public void add(int rowsCleared) {
+    sum.add(rowsCleared);
+    sumOfSquares.add((long) rowsCleared * rowsCleared);
+    min.accumulate(rowsCleared);
+    max.accumulate(rowsCleared);
+    // counted last so a result is never counted before it is summed
+    count.increment();
+    if (count.sum() >= expectedGames) {
+      completion.complete(null);
+    }
+  }
+
+  // completes once games results have been added
+  public CompletableFuture<Void> whenComplete(int games) {
+    expectedGames = games;
+    if (getCount() >= games) {
+      completion.complete(null);
+    }
+    return completion;
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  // mean rows cleared rounded down, 0 before any game has finished
+  public int getValue() {
+    long games = getCount();
+    return games == 0 ? 0 : (int) (sum.sum() / games);
+  }
+
+  public double getMean() {
+    long games = getCount();
+    return games == 0 ? 0 : (double) sum.sum() / games;
+  }
+
+  // population variance of the rows cleared
+  public double getVariance() {
+    long games = getCount();
+    if (games == 0) {
+      return 0;
+    }
+    double mean = (double) sum.sum() / games;
+    return Math.max(0, (double) sumOfSquares.sum() / games - mean * mean);
+  }
+
+  public double getStandardDeviation() {
+    return Math.sqrt(getVariance());
+  }
+
+  public int getMin() {
+    return getCount() == 0 ? 0 : (int) min.get();
+  }
+
+  public int getMax() {
+    return getCount() == 0 ? 0 : (int) max.get();
+  }
+
+  // statistics for a Checkpoint
+  public void write(DataOutputStream out) throws IOException {
+    out.writeLong(count.sum());
+    out.writeLong(sum.sum());
+    out.writeLong(sumOfSquares.sum());
+    out.writeLong(min.get());
+    out.writeLong(max.get());
+  }
+
+  public static FitnessAccumulator read(DataInputStream in) throws IOException {
+    FitnessAccumulator accumulator = new FitnessAccumulator();
+    long games = in.readLong();
+    accumulator.sum.add(in.readLong());
+    accumulator.sumOfSquares.add(in.readLong());
+    accumulator.min.accumulate(in.readLong());
+    accumulator.max.accumulate(in.readLong());
+    accumulator.count.add(games);
+    return accumulator;
+  }
+
+  @Override
+  public String toString() {
+    return Integer.toString(getValue());
+  }
+}
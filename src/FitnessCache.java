@@ -0,0 +1,216 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Memo of finished games - the same weights playing the same seed always
+// clear the same rows, so a game is only ever played once. Results are kept
+// in memory up to Constant.FITNESS_CACHE_ENTRIES and, with a
+// Constant.FITNESS_CACHE_FILE, also appended to that file and read back by
+// the next run. The file starts with the settings the results depend on and
+// is started over when they differ.
+public class FitnessCache {
+
+  private static final int MAGIC = 0x54464331;
+  private static final int VERSION = 2;
+
+  private static FitnessCache instance;
+
+  private final ConcurrentHashMap<Key, Integer> results = new ConcurrentHashMap<Key, Integer>();
+  private final int maxEntries;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  // appended with every new result, null without a file
+  private DataOutputStream file;
+
+  // the cache of the run, null when caching is off or games depend on timing
+  public static synchronized FitnessCache getInstance() {
+    if (instance == null && Constant.FITNESS_CACHE_ENTRIES > 0 && Constant.MOVE_TIME_BUDGET_MS == 0) {
+      instance = new FitnessCache(Constant.FITNESS_CACHE_ENTRIES, Constant.FITNESS_CACHE_FILE);
+    }
+    return instance;
+  }
+
+  public FitnessCache(int maxEntries, String fileName) {
+    this.maxEntries = maxEntries;
+    if (fileName != null) {
+      openFile(new File(fileName));
+    }
+  }
+
+  // rows cleared by weights playing seed, -1 if that game has not been played
+  public int get(double[] weights, long seed) {
+    Integer rowsCleared = results.get(new Key(weights, seed));
+    if (rowsCleared == null) {
+      misses.increment();
+      return -1;
+    }
+    hits.increment();
+    return rowsCleared;
+  }
+
+  // only for games played to the end
+  public void put(double[] weights, long seed, int rowsCleared) {
+    Key key = new Key(Arrays.copyOf(weights, weights.length), seed);
+    if (results.size() < maxEntries) {
+      results.put(key, rowsCleared);
+    }
+    if (file != null) {
+      write(key, rowsCleared);
+    }
+  }
+
+  public synchronized void flush() {
+    if (file != null) {
+      try {
+        file.flush();
+      } catch (IOException e) {
+        closeFile(e);
+      }
+    }
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public double getHitRate() {
+    long hits = getHits();
+    long total = hits + getMisses();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  public int size() {
+    return results.size();
+  }
+
+  @Override
+  public String toString() {
+    return "hits " + getHits() + " misses " + getMisses() + " hit rate " + getHitRate() + " entries " + size();
+  }
+
+  private void openFile(File path) {
+    boolean append = path.exists() && readFile(path);
+    try {
+      file = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path, append)));
+      if (!append) {
+        file.writeInt(MAGIC);
+        file.writeInt(VERSION);
+        writeSettings(file);
+      }
+    } catch (IOException e) {
+      closeFile(e);
+    }
+  }
+
+  // loads the results of path, false if it was written with other settings
+  private boolean readFile(File path) {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION || !readSettings(in)) {
+        System.out.println("Fitness cache " + path + " was written with other settings, starting over");
+        return false;
+      }
+      try {
+        while (true) {
+          long seed = in.readLong();
+          double[] weights = new double[Constant.NUMB_FEATURES];
+          for (int i = 0; i < weights.length; i++) {
+            weights[i] = in.readDouble();
+          }
+          int rowsCleared = in.readInt();
+          if (results.size() < maxEntries) {
+            results.put(new Key(weights, seed), rowsCleared);
+          }
+        }
+      } catch (EOFException e) {
+        // end of the results, a record cut short by a crash is dropped
+      }
+      return true;
+    } catch (IOException e) {
+      System.out.println("Couldn't read fitness cache " + path);
+      return false;
+    }
+  }
+
+  // everything besides weights and seed that decides the rows of a game
+  static void writeSettings(DataOutputStream out) throws IOException {
+    out.writeInt(Constant.NUMB_FEATURES);
+    out.writeInt(PlayerThread.getMaxPiecesPerGame());
+    out.writeInt(Constant.BEAM_WIDTH);
+    out.writeInt(Constant.BEAM_DEPTH);
+    out.writeInt(Constant.EXPECTIMAX_DEPTH);
+  }
+
+  static boolean readSettings(DataInputStream in) throws IOException {
+    return in.readInt() == Constant.NUMB_FEATURES
+        && in.readInt() == PlayerThread.getMaxPiecesPerGame()
+        && in.readInt() == Constant.BEAM_WIDTH
+        && in.readInt() == Constant.BEAM_DEPTH
+        && in.readInt() == Constant.EXPECTIMAX_DEPTH;
+  }
+
+  private synchronized void write(Key key, int rowsCleared) {
+    if (file == null) {
+      return;
+    }
+    try {
+      file.writeLong(key.seed);
+      for (double weight : key.weights) {
+        file.writeDouble(weight);
+      }
+      file.writeInt(rowsCleared);
+    } catch (IOException e) {
+      closeFile(e);
+    }
+  }
+
+  // stops writing after an error, the results in memory are still good
+  private void closeFile(IOException e) {
+    System.out.println("Couldn't write fitness cache: " + e.getMessage());
+    try {
+      if (file != null) {
+        file.close();
+      }
+    } catch (IOException ignored) {
+    }
+    file = null;
+  }
+
+  private static class Key {
+    private final double[] weights;
+    private final long seed;
+    private final int hash;
+
+    Key(double[] weights, long seed) {
+      this.weights = weights;
+      this.seed = seed;
+      this.hash = 31 * Arrays.hashCode(weights) + Long.hashCode(seed);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) other;
+      return seed == key.seed && Arrays.equals(weights, key.weights);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
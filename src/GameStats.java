@@ -0,0 +1,51 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+// Totals of the games played while it is installed with
+// PlayerThread.setGameStats - games, placements, time spent in games and
+// every game's duration for percentiles.
+public class GameStats {
+
+  private final LongAdder games = new LongAdder();
+  private final LongAdder placements = new LongAdder();
+  private final LongAdder busyNanos = new LongAdder();
+  private final ConcurrentLinkedQueue<Long> durations = new ConcurrentLinkedQueue<Long>();
+
+  public void record(int pieces, long nanos) {
+    games.increment();
+    placements.add(pieces);
+    busyNanos.add(nanos);
+    durations.add(nanos);
+  }
+
+  public long getGames() {
+    return games.sum();
+  }
+
+  public long getPlacements() {
+    return placements.sum();
+  }
+
+  public long getBusyNanos() {
+    return busyNanos.sum();
+  }
+
+  // game duration below which fraction of the games finished, 0 without games
+  public long durationPercentile(double fraction) {
+    long[] sorted = new long[durations.size()];
+    int n = 0;
+    for (long nanos : durations) {
+      if (n == sorted.length) {
+        break;
+      }
+      sorted[n++] = nanos;
+    }
+    if (n == 0) {
+      return 0;
+    }
+    Arrays.sort(sorted, 0, n);
+    int rank = Math.max(0, (int) Math.ceil(fraction * n) - 1);
+    return sorted[Math.min(n - 1, rank)];
+  }
+}
@@ -1,67 +1,506 @@
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.*;
-import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class GeneticAlgorithm {
 
-  public static ArrayList<Person> population;
+  // seed of the population and SEEDS of --benchmark
+  private static final long BENCHMARK_SEED = 4701;
 
-  public static void main(String[] args) {
-    System.out.println("Beginning GA");
+  public static ArrayList<Person> population;
+  // first iteration to run, after the last one of a resumed checkpoint
+  private static int firstIteration = 0;
+  private static boolean resumed = false;
+
+  // seed the game SEEDS were drawn from, written to every checkpoint
+  private static long masterSeed = Constant.MASTER_SEED;
+  // generators of the GA operators, split off the master seed in a fixed
+  // order - the GA thread's, the steady-state breeder's and one per island
+  private static SplittableRandom random;
+  private static SplittableRandom breederRandom;
+  private static SplittableRandom[] islandRandoms;
+
+  // island mode - the survivors of every island after its last iteration, the
+  // last iteration each island finished and the migrants sent to each island.
+  // They change together under islandLock, so that a checkpoint sees every
+  // island at a consistent point.
+  private static AtomicReferenceArray<List<Person>> islandSurvivors;
+  private static int[] islandIterations;
+  private static List<ConcurrentLinkedQueue<Person>> migrants;
+  private static final Object islandLock = new Object();
+  // the islands of a resumed checkpoint
+  private static List<Checkpoint.Island> resumedIslands = new ArrayList<Checkpoint.Island>();
+
+  // java GeneticAlgorithm [--coordinator port] [--resume [checkpoint]] - with
+  // a port the games are played by EvaluationWorker JVMs connecting to it,
+  // --resume carries on from Constant.CHECKPOINT_FILE or the given checkpoint.
+  // java GeneticAlgorithm --benchmark generations [pieces per game] [json file]
+  // measures throughput instead, see benchmark().
+  public static void main(String[] args) throws IOException {
+    System.out.println("Beginning GA with master seed " + Constant.MASTER_SEED);
+    if (Constant.NUMB_ISLANDS < 1 || Constant.NUMB_ISLANDS > Constant.POPULATION_SIZE) {
+      throw new IllegalArgumentException("NUMB_ISLANDS must be between 1 and POPULATION_SIZE, not "
+          + Constant.NUMB_ISLANDS);
+    }
+    splitGenerators(new SplittableRandom(Constant.MASTER_SEED).split());
     State.initializeLegalMoves();
+    SearchMetrics.registerMBean();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--benchmark") && i + 1 < args.length) {
+        int generations = Integer.parseInt(args[i + 1]);
+        int maxPieces = i + 2 < args.length ? Integer.parseInt(args[i + 2]) : 2000;
+        benchmark(generations, maxPieces, i + 3 < args.length ? args[i + 3] : null);
+        AsyncLogger.getInstance().close();
+        return;
+      } else if (args[i].equals("--coordinator") && i + 1 < args.length) {
+        EvaluationCoordinator.start(Integer.parseInt(args[++i]));
+      } else if (args[i].equals("--resume")) {
+        String fileName = Constant.CHECKPOINT_FILE;
+        if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+          fileName = args[++i];
+        }
+        // the log of the run so far is kept
+        AsyncLogger.open(Constant.LOG_FILE, true);
+        resume(Checkpoint.load(fileName));
+      }
+    }
     for (double i : GeneticSearch()) {
       System.out.println(i);
     }
+    Checkpoint.finishWrites();
+    AsyncLogger.getInstance().close();
   }
 
-  private static void saveToFile(int iteration) {
-    try {
-      PrintWriter out = new PrintWriter(new FileOutputStream("output.txt"));
-      out.println(iteration);
-      out.println("Best value: " + population.get(0).getFitness());
-      out.println("Worst value: " + population.get(population.size() - 1).getFitness());
-      int index = 0;
-      for (Person p : population) {
-        double[] weights = population.get(index).weights;
-        for (double w : weights) {
-          out.print(w + " ");
-        }
-        out.println();
-        index++;
+  // Runs generations of the GA from a population and SEEDS drawn from
+  // BENCHMARK_SEED with games capped at maxPieces, and prints the throughput
+  // as JSON - also written to jsonFile if given. Crossover and mutation draw
+  // from generators split off BENCHMARK_SEED as well, so runs breed the same
+  // children unless games are cancelled in a different order. No game
+  // records are written, so a run's LOG_FILE is left alone.
+  private static void benchmark(int generations, int maxPieces, String jsonFile) throws IOException {
+    AsyncLogger.open(null, false);
+    PlayerThread.setMaxPiecesPerGame(maxPieces);
+    Random benchmarkRandom = new Random(BENCHMARK_SEED);
+    splitGenerators(new SplittableRandom(BENCHMARK_SEED));
+    for (int i = 0; i < Constant.SEEDS.length; i++) {
+      Constant.SEEDS[i] = benchmarkRandom.nextLong();
+    }
+    GameStats stats = new GameStats();
+    PlayerThread.setGameStats(stats);
+    ThreadController threadMaster = ThreadController.getInstance();
+
+    long start = System.nanoTime();
+    population = new ArrayList<Person>();
+    for (int i = 0; i < Constant.POPULATION_SIZE; i++) {
+      double[] weights = new double[Constant.NUMB_FEATURES];
+      for (int f = 0; f < Constant.NUMB_FEATURES; f++) {
+        weights[f] = benchmarkRandom.nextDouble() * 10 * Constant.FEATURE_TYPE[f];
       }
+      Person person = new Person(weights);
+      person.updateFitness();
+      population.add(person);
+    }
+    threadMaster.waitFinishUpdate();
+    refinePopulation(population, Constant.POPULATION_SIZE);
+    long initialNanos = System.nanoTime() - start;
+
+    long[] generationNanos = new long[generations];
+    for (int g = 0; g < generations; g++) {
+      long generationStart = System.nanoTime();
+      int cutoff = population.get(Constant.POPULATION_SIZE - 1).getFitness().getValue();
+      ThreadController.Batch crossOvers = expandPopulationByCrossOver(population, Constant.POPULATION_SIZE, cutoff, random);
+      ThreadController.Batch mutations = expandPopulationByMutation(population, Constant.POPULATION_SIZE, cutoff, random);
+      crossOvers.await();
+      mutations.await();
+      refinePopulation(population, Constant.POPULATION_SIZE);
+      generationNanos[g] = System.nanoTime() - generationStart;
+    }
+    long wallNanos = System.nanoTime() - start;
+    PlayerThread.setGameStats(null);
+
+    long[] sortedGenerations = Arrays.copyOf(generationNanos, generations);
+    Arrays.sort(sortedGenerations);
+    long generationP50 = generations == 0 ? 0 : sortedGenerations[(generations - 1) / 2];
+    long generationMax = generations == 0 ? 0 : sortedGenerations[generations - 1];
+    double wallSeconds = wallNanos / 1e9;
+    int threads = threadMaster.getPoolSize();
+    StringBuilder json = new StringBuilder(1024);
+    json.append("{\"generations\":").append(generations)
+        .append(",\"populationSize\":").append(Constant.POPULATION_SIZE)
+        .append(",\"gamesPerUpdate\":").append(Constant.NUMB_GAMES_PER_UPDATE)
+        .append(",\"maxPiecesPerGame\":").append(maxPieces)
+        .append(",\"cores\":").append(Runtime.getRuntime().availableProcessors())
+        .append(",\"threads\":").append(threads)
+        .append(",\"games\":").append(stats.getGames())
+        .append(",\"placements\":").append(stats.getPlacements())
+        .append(",\"wallSeconds\":").append(wallSeconds)
+        .append(",\"gamesPerSecond\":").append(stats.getGames() / wallSeconds)
+        .append(",\"placementsPerSecond\":").append(stats.getPlacements() / wallSeconds)
+        .append(",\"initialPopulationMillis\":").append(initialNanos / 1e6)
+        .append(",\"generationMillisP50\":").append(generationP50 / 1e6)
+        .append(",\"generationMillisMax\":").append(generationMax / 1e6)
+        .append(",\"gameMillisP50\":").append(stats.durationPercentile(0.5) / 1e6)
+        .append(",\"gameMillisP99\":").append(stats.durationPercentile(0.99) / 1e6)
+        .append(",\"utilization\":").append(threads == 0 ? 0 : stats.getBusyNanos() / ((double) wallNanos * threads))
+        .append(",\"cancelledGames\":").append(RaceTracker.getCancelledGames());
+    FitnessCache cache = FitnessCache.getInstance();
+    if (cache != null) {
+      json.append(",\"cachedGames\":").append(cache.getHits());
+    }
+    json.append(",\"search\":").append(SearchMetrics.total().toJson());
+    json.append(",\"generationMillis\":[");
+    for (int g = 0; g < generations; g++) {
+      json.append(g == 0 ? "" : ",").append(generationNanos[g] / 1e6);
+    }
+    json.append("]}");
+
+    System.out.println(json);
+    if (jsonFile != null) {
+      PrintWriter out = new PrintWriter(new FileOutputStream(jsonFile));
+      out.println(json);
       out.close();
-    } catch (Exception e) {
-      System.out.println("Couldn't save file");
     }
   }
 
+  private static void resume(Checkpoint checkpoint) {
+    if (checkpoint.getSeeds().length != Constant.SEEDS.length) {
+      throw new IllegalArgumentException("Checkpoint has " + checkpoint.getSeeds().length + " seeds, not "
+          + Constant.SEEDS.length);
+    }
+    System.arraycopy(checkpoint.getSeeds(), 0, Constant.SEEDS, 0, Constant.SEEDS.length);
+    // later checkpoints keep the seed of the original run. Its draws are not
+    // replayed, but resuming the same checkpoint twice breeds the same children
+    masterSeed = checkpoint.getMasterSeed();
+    splitGenerators(new SplittableRandom(masterSeed + checkpoint.getIteration()));
+    population = checkpoint.getPopulation();
+    resumedIslands = checkpoint.getIslands();
+    firstIteration = checkpoint.getIteration() + 1;
+    resumed = true;
+    System.out.println("Resuming after iteration " + checkpoint.getIteration() + " with master seed " + masterSeed);
+  }
+
+  // output.txt and the iteration record are written by the AsyncLogger thread
+  private static void saveToFile(int iteration, List<Person> population) {
+    StringBuilder out = new StringBuilder();
+    out.append(iteration).append('\n');
+    out.append("Best value: ").append(population.get(0).getFitness()).append('\n');
+    out.append("Worst value: ").append(population.get(population.size() - 1).getFitness()).append('\n');
+    for (Person p : population) {
+      for (double w : p.weights) {
+        out.append(w).append(' ');
+      }
+      out.append('\n');
+    }
+    AsyncLogger logger = AsyncLogger.getInstance();
+    logger.writeFile("output.txt", out.toString());
+
+    FitnessAccumulator best = population.get(0).getFitness();
+    StringBuilder json = new StringBuilder(256);
+    json.append("{\"type\":\"iteration\",\"iteration\":").append(iteration)
+        .append(",\"best\":").append(best.getMean())
+        .append(",\"bestStandardDeviation\":").append(best.getStandardDeviation())
+        .append(",\"worst\":").append(population.get(population.size() - 1).getFitness().getMean())
+        .append(",\"cancelledGames\":").append(RaceTracker.getCancelledGames())
+        .append(",\"droppedRecords\":").append(logger.getDropped())
+        .append(",\"search\":").append(SearchMetrics.total().toJson())
+        .append(",\"bestWeights\":[");
+    double[] weights = population.get(0).weights;
+    for (int i = 0; i < weights.length; i++) {
+      json.append(i == 0 ? "" : ",").append(weights[i]);
+    }
+    logger.record(json.append("]}").toString());
+    saveCheckpoint(iteration, population);
+  }
+
+  private static void saveCheckpoint(int iteration, List<Person> population) {
+    if (Constant.CHECKPOINT_FILE == null) {
+      return;
+    }
+    List<Checkpoint.Island> islands = null;
+    if (islandIterations != null) {
+      islands = new ArrayList<Checkpoint.Island>();
+      for (int k = 0; k < islandIterations.length; k++) {
+        islands.add(new Checkpoint.Island(islandIterations[k], islandSurvivors.get(k),
+            new ArrayList<Person>(migrants.get(k))));
+      }
+    }
+    Checkpoint.saveAsync(Constant.CHECKPOINT_FILE, iteration, masterSeed, population, islands);
+  }
+
   private static double[] GeneticSearch() {
-    InitializePopulation();
-    refinePopulation();
-    saveToFile(-1);
+    if (!resumed) {
+      InitializePopulation();
+      refinePopulation(population, Constant.POPULATION_SIZE);
+      saveToFile(-1, population);
+    }
+    if (Constant.STEADY_STATE) {
+      return steadyStateSearch();
+    }
+    if (Constant.NUMB_ISLANDS > 1) {
+      return islandSearch();
+    }
 
-    for (int iteration = 0; iteration < Constant.NUMB_ITERATIONS; iteration++) {
+    for (int iteration = firstIteration; iteration < Constant.NUMB_ITERATIONS; iteration++) {
       System.out.println("#------------------- Starting Iteration # + " + iteration + "-----------------------#");
-      expandPopulationByCrossOver();
-      expandPopulationByMutation();
-      refinePopulation();
+      // children have to beat the worst survivor to make it into the population
+      int cutoff = population.get(Constant.POPULATION_SIZE - 1).getFitness().getValue();
+      // mutation picks from the survivors only, so it is dispatched while the
+      // crossover games are still running
+      ThreadController.Batch crossOvers = expandPopulationByCrossOver(population, Constant.POPULATION_SIZE, cutoff, random);
+      ThreadController.Batch mutations = expandPopulationByMutation(population, Constant.POPULATION_SIZE, cutoff, random);
+      crossOvers.await();
+      mutations.await();
+      refinePopulation(population, Constant.POPULATION_SIZE);
 
       // Logging
       System.out.println("# Current best value: " + population.get(0).getFitness());
       System.out.println("# Current min value: " + population.get(population.size() - 1).getFitness());
+      FitnessAccumulator best = population.get(0).getFitness();
+      System.out.println("# Current best spread: " + best.getMin() + " to " + best.getMax()
+          + ", standard deviation " + best.getStandardDeviation());
+      System.out.println("# Games cancelled so far: " + RaceTracker.getCancelledGames());
+      FitnessCache cache = FitnessCache.getInstance();
+      if (cache != null) {
+        System.out.println("# Fitness cache: " + cache);
+        cache.flush();
+      }
       double[] weights = population.get(0).weights;
       for (double i : weights) {
         System.out.print(i + " ");
       }
       System.out.println();
 
-      saveToFile(iteration);
+      saveToFile(iteration, population);
+    }
+
+    return population.get(0).weights;
+
+  }
+
+  // steady state - as many children as a generation breeds are evaluated at
+  // once, and whenever one finishes it joins the ranked population, the worst
+  // member drops out and the next child is bred and submitted, so there is no
+  // barrier. Runs as many children as NUMB_ITERATIONS generations would.
+  private static double[] steadyStateSearch() {
+    ConcurrentSkipListSet<Person> ranked = new ConcurrentSkipListSet<Person>(population);
+    int crossOvers = Constant.PERCENTAGE_CROSS_OVER * Constant.POPULATION_SIZE / 100;
+    int perGeneration = Math.max(1, crossOvers + Constant.PERCENTAGE_MUTATION * Constant.POPULATION_SIZE / 100);
+    int children = (Constant.NUMB_ITERATIONS - firstIteration) * perGeneration;
+    CountDownLatch finished = new CountDownLatch(children);
+    AtomicLong completed = new AtomicLong();
+    int[] bred = { 0 };
+
+    // breeds the next child if the budget allows, called under the ranked lock,
+    // which also guards breederRandom
+    Runnable[] breed = new Runnable[1];
+    breed[0] = () -> {
+      if (bred[0] == children) {
+        return;
+      }
+      bred[0]++;
+      Person[] parents = ranked.toArray(new Person[0]);
+      Person parent = parents[Fitness.randomInt(breederRandom, parents.length)];
+      Person child;
+      if (Fitness.randomInt(breederRandom, perGeneration) < crossOvers) {
+        child = Person.crossOver(parent, parents[Fitness.randomInt(breederRandom, parents.length)], breederRandom);
+      } else {
+        child = Person.mutate(parent, Fitness.randomInt(breederRandom, Constant.NUMB_FEATURES), breederRandom);
+      }
+      int cutoff = ranked.last().getFitness().getValue();
+      child.evaluation().whenCompleteAsync((result, error) -> {
+        try {
+          if (error != null) {
+            throw error;
+          }
+          synchronized (ranked) {
+            ranked.add(child);
+            while (ranked.size() > Constant.POPULATION_SIZE) {
+              ranked.pollLast();
+            }
+            breed[0].run();
+            // counted and logged under the lock, so that generations are
+            // logged and checkpointed in order
+            long done = completed.incrementAndGet();
+            if (done % perGeneration == 0) {
+              logSteadyState(firstIteration + done / perGeneration - 1, new ArrayList<Person>(ranked));
+            }
+          }
+        } catch (Throwable e) {
+          // a lost child would leave finished waiting forever
+          System.out.println("ERROR: Steady state breeding failed");
+          e.printStackTrace();
+          System.exit(1);
+        } finally {
+          finished.countDown();
+        }
+      }, ThreadController.getInstance().getExecutor());
+      child.updateFitness(ThreadController.getInstance().newBatch(), cutoff);
+    };
+    synchronized (ranked) {
+      for (int i = 0; i < perGeneration; i++) {
+        breed[0].run();
+      }
+    }
+
+    try {
+      finished.await();
+    } catch (InterruptedException e) {
+      System.out.println("ERROR: Thread execution interrupted");
+      System.exit(1);
+    }
+    population = new ArrayList<Person>(ranked);
+    return population.get(0).weights;
+  }
+
+  // logs and saves the population every generation's worth of children
+  private static synchronized void logSteadyState(long generation, ArrayList<Person> ranked) {
+    System.out.println("# Steady state generation " + generation + " best value: " + ranked.get(0).getFitness()
+        + ", min value: " + ranked.get(ranked.size() - 1).getFitness());
+    saveToFile((int) generation, ranked);
+  }
+
+  private static void splitGenerators(SplittableRandom master) {
+    random = master.split();
+    breederRandom = master.split();
+    islandRandoms = new SplittableRandom[Constant.NUMB_ISLANDS];
+    for (int k = 0; k < islandRandoms.length; k++) {
+      islandRandoms[k] = master.split();
+    }
+  }
+
+  // island model - the population is dealt out to NUMB_ISLANDS islands that
+  // breed on their own threads without waiting for each other. Every
+  // MIGRATION_INTERVAL iterations an island sends its best MIGRANTS to the
+  // next island in a ring, which takes them in at the start of its next
+  // iteration. Every island checkpoints after each of its iterations, and
+  // a resumed island carries on from its own iteration with the migrants that
+  // were on their way to it.
+  private static double[] islandSearch() {
+    int islands = Constant.NUMB_ISLANDS;
+    islandSurvivors = new AtomicReferenceArray<List<Person>>(islands);
+    migrants = new ArrayList<ConcurrentLinkedQueue<Person>>();
+    boolean restore = resumedIslands.size() == islands;
+    if (!resumedIslands.isEmpty() && !restore) {
+      System.out.println("Checkpoint has " + resumedIslands.size() + " islands, dealing its population out to "
+          + islands);
+    }
+    islandIterations = new int[islands];
+    Thread[] threads = new Thread[islands];
+    for (int k = 0; k < islands; k++) {
+      // dealt out in turn, so the first POPULATION_SIZE % islands islands get
+      // one member more
+      ArrayList<Person> island = new ArrayList<Person>();
+      for (int i = k; i < Math.min(Constant.POPULATION_SIZE, population.size()); i += islands) {
+        island.add(population.get(i));
+      }
+      migrants.add(new ConcurrentLinkedQueue<Person>());
+      islandIterations[k] = firstIteration - 1;
+      if (restore) {
+        Checkpoint.Island saved = resumedIslands.get(k);
+        island = saved.getMembers();
+        migrants.get(k).addAll(saved.getMigrants());
+        islandIterations[k] = saved.getIteration();
+      }
+      islandSurvivors.set(k, island);
+      // a population merged from islands can come up short, as a migrant can
+      // survive on two islands
+      int islandSize = Math.min(island.size(),
+          Constant.POPULATION_SIZE / islands + (k < Constant.POPULATION_SIZE % islands ? 1 : 0));
+      int islandIndex = k;
+      threads[k] = new Thread(() -> evolveIsland(islandIndex, islandSize), "island " + k);
+    }
+
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+      System.out.println("ERROR: Thread execution interrupted");
+      System.exit(1);
     }
 
+    population = mergeIslands();
     return population.get(0).weights;
+  }
+
+  private static void evolveIsland(int k, int islandSize) {
+    SplittableRandom random = islandRandoms[k];
+    ConcurrentLinkedQueue<Person> next = migrants.get((k + 1) % Constant.NUMB_ISLANDS);
+    ArrayList<Person> island = new ArrayList<Person>(islandSurvivors.get(k));
+    for (int iteration = islandIterations[k] + 1; iteration < Constant.NUMB_ITERATIONS; iteration++) {
+      synchronized (islandLock) {
+        Person migrant;
+        while ((migrant = migrants.get(k).poll()) != null) {
+          // a migrant can come back around the ring
+          if (!island.contains(migrant)) {
+            island.add(migrant);
+          }
+        }
+        // the migrants taken in are saved as members from now on
+        islandSurvivors.set(k, new ArrayList<Person>(island));
+      }
+      refinePopulation(island, islandSize);
+
+      int cutoff = island.get(islandSize - 1).getFitness().getValue();
+      ThreadController.Batch crossOvers = expandPopulationByCrossOver(island, islandSize, cutoff, random);
+      ThreadController.Batch mutations = expandPopulationByMutation(island, islandSize, cutoff, random);
+      crossOvers.await();
+      mutations.await();
+      refinePopulation(island, islandSize);
+
+      synchronized (islandLock) {
+        if ((iteration + 1) % Constant.MIGRATION_INTERVAL == 0) {
+          for (int i = 0; i < Constant.MIGRANTS && i < islandSize; i++) {
+            next.add(island.get(i));
+          }
+        }
+        islandSurvivors.set(k, new ArrayList<Person>(island));
+        int finished = finishedIteration();
+        islandIterations[k] = iteration;
+        // logged once every island is done with the iteration
+        if (finishedIteration() > finished) {
+          saveToFile(finishedIteration(), mergeIslands());
+        } else {
+          saveCheckpoint(finishedIteration(), mergeIslands());
+        }
+      }
+
+      System.out.println("# Island " + k + " iteration " + iteration + " best value: " + island.get(0).getFitness()
+          + ", min value: " + island.get(islandSize - 1).getFitness());
+    }
+  }
+
+  // last iteration every island has finished, called under islandLock
+  private static int finishedIteration() {
+    int finished = Integer.MAX_VALUE;
+    for (int iteration : islandIterations) {
+      finished = Math.min(finished, iteration);
+    }
+    return finished;
+  }
 
+  // every island's survivors, best first
+  private static ArrayList<Person> mergeIslands() {
+    ArrayList<Person> merged = new ArrayList<Person>();
+    for (int k = 0; k < islandSurvivors.length(); k++) {
+      for (Person person : islandSurvivors.get(k)) {
+        if (!merged.contains(person)) {
+          merged.add(person);
+        }
+      }
+    }
+    Collections.sort(merged);
+    return merged;
   }
 
   private static void InitializePopulation() {
@@ -86,134 +525,64 @@ public class GeneticAlgorithm {
     }
 
     for (int i = 0; i < Constant.POPULATION_SIZE; i++) {
-      population.add(new Person());
+      population.add(new Person(random));
     }
 
     ThreadController threadMaster = ThreadController.getInstance();
     threadMaster.waitFinishUpdate();
   }
 
-  private static void refinePopulation() {
+  private static void refinePopulation(ArrayList<Person> population, int size) {
     Collections.sort(population);
-    while (population.size() > Constant.POPULATION_SIZE) {
+    while (population.size() > size) {
       population.remove(population.size() - 1);
     }
   }
 
-  private static void expandPopulationByCrossOver() {
+  // children an operator breeds from a population of size - at least one as
+  // long as percentage is above 0, so that small islands still evolve
+  private static int children(int percentage, int size) {
+    return percentage > 0 ? Math.max(1, percentage * size / 100) : 0;
+  }
+
+  private static ThreadController.Batch expandPopulationByCrossOver(ArrayList<Person> population, int size,
+      int cutoff, SplittableRandom random) {
+    ThreadController.Batch batch = ThreadController.getInstance().newBatch();
     Vector subjects = new Vector<Person>();
-    for (int i = 0; i < Constant.PERCENTAGE_CROSS_OVER * Constant.POPULATION_SIZE / 100; i++) {
-      int subject1 = Fitness.randomInt(population.size());
-      int subject2 = Fitness.randomInt(population.size());
+    int crossOvers = children(Constant.PERCENTAGE_CROSS_OVER, size);
+    for (int i = 0; i < crossOvers; i++) {
+      int subject1 = Fitness.randomInt(random, population.size());
+      int subject2 = Fitness.randomInt(random, population.size());
       if (subject1 != subject2) {
-        subjects.add(Person.crossOver(population.get(subject1), population.get(subject2)));
+        Person child = Person.crossOver(population.get(subject1), population.get(subject2), random);
+        child.updateFitness(batch, cutoff);
+        subjects.add(child);
       }
     }
     subjects.forEach(subject -> population.add((Person) subject));
-
-    ThreadController threadMaster = ThreadController.getInstance();
-    threadMaster.waitFinishUpdate();
+    return batch;
   }
 
-  private static void expandPopulationByMutation() {
+  private static ThreadController.Batch expandPopulationByMutation(ArrayList<Person> population, int size,
+      int cutoff, SplittableRandom random) {
+    ThreadController.Batch batch = ThreadController.getInstance().newBatch();
     Vector subjects = new Vector<Integer>();
-    while (subjects.size() < Constant.PERCENTAGE_MUTATION * Constant.POPULATION_SIZE / 100) {
-      int subject = Fitness.randomInt(Constant.POPULATION_SIZE);
+    int mutations = Math.min(size, children(Constant.PERCENTAGE_MUTATION, size));
+    while (subjects.size() < mutations) {
+      int subject = Fitness.randomInt(random, size);
       if (!subjects.contains(subject)) {
         subjects.add(subject);
       }
     }
 
     for (int i = 0; i < subjects.size(); i++) {
-      int subject = Fitness.randomInt(subjects.size());
-      int featureIndex = Fitness.randomInt(Constant.NUMB_FEATURES);
-
-      population.add(Person.mutate(population.get(subject), featureIndex));
-    }
-
-    ThreadController threadMaster = ThreadController.getInstance();
-    threadMaster.waitFinishUpdate();
-  }
-}
+      int subject = Fitness.randomInt(random, subjects.size());
+      int featureIndex = Fitness.randomInt(random, Constant.NUMB_FEATURES);
 
-class Person implements Comparable<Person> {
-  public double[] weights;
-  private AtomicInteger fitness = new AtomicInteger(0);
-
-  public Person() {
-    this.randomWeightVector();
-    this.updateFitness();
-  }
-
-  public Person(double[] weights) {
-    this.weights = weights;
-  }
-
-  private void randomWeightVector() {
-    weights = new double[Constant.NUMB_FEATURES];
-    for (int i = 0; i < Constant.NUMB_FEATURES; i++) {
-      weights[i] = Math.abs(Fitness.randomReal() * 10) * Constant.FEATURE_TYPE[i];
-    }
-  }
-
-  public void updateFitness() {
-    ThreadController threadMaster = ThreadController.getInstance();
-
-    for (int i = 0; i < Constant.NUMB_GAMES_PER_UPDATE; i++) {
-      long randomSeed = Constant.SEEDS[i];
-      String threadName = this.toString() + " #" + i;
-
-      PlayerThread game = new PlayerThread(threadName, randomSeed, weights, fitness);
-      threadMaster.submitTask(game);
-    }
-  }
-
-  public static Person crossOver(Person self, Person other) {
-    double[] weights = Arrays.copyOf(self.weights, self.weights.length);
-    for (int i = 0; i < weights.length; i++) {
-      if (Fitness.flipCoin()) {
-        weights[i] = other.weights[i];
-      }
+      Person child = Person.mutate(population.get(subject), featureIndex, random);
+      child.updateFitness(batch, cutoff);
+      population.add(child);
     }
-    Person child = new Person(weights);
-    child.updateFitness();
-    return child;
+    return batch;
   }
-
-  public static Person mutate(Person self, int mutateLocation) {
-    double[] weights = Arrays.copyOf(self.weights, self.weights.length);
-    weights[mutateLocation] += Fitness.randomReal() * 2;
-    Person child = new Person(weights);
-    child.updateFitness();
-    return child;
-  }
-
-  public int compareTo(Person other) {
-    return other.fitness.getValue() - this.fitness.getValue();
-  }
-
-  public void setWeights(double[] weights) {
-    this.weights = weights;
-  }
-
-  public double[] getWeights() {
-    return weights;
-  }
-
-  public AtomicInteger getFitness() {
-    return this.fitness;
-  }
-
-  public Person clone() {
-    return new Person(Arrays.copyOf(weights, weights.length));
-  }
-
-  public String toString() {
-    String text = "";
-    for (double weight : weights) {
-      text += "|" + weight;
-    }
-    return text;
-  }
-
 }
@@ -0,0 +1,7 @@
+// Strategy a PlayerThread plays with, see PlayerThread.setMovePicker().
+public interface MovePicker {
+
+  // index into legalMoves of the move to play for the next piece of state -
+  // state has to be left as it was
+  int pickMove(AdvancedState state, int[][] legalMoves);
+}
@@ -0,0 +1,145 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A weight vector of the GA and the statistics of the games it has played.
+public class Person implements Comparable<Person> {
+  private static final AtomicLong nextId = new AtomicLong();
+
+  public double[] weights;
+  private FitnessAccumulator fitness = new FitnessAccumulator();
+  // creation order, breaks ties in compareTo
+  private final long id = nextId.getAndIncrement();
+
+  public Person(SplittableRandom random) {
+    this.randomWeightVector(random);
+    this.updateFitness();
+  }
+
+  public Person(double[] weights) {
+    this.weights = weights;
+  }
+
+  // already evaluated, as read back from a Checkpoint
+  public Person(double[] weights, FitnessAccumulator fitness) {
+    this.weights = weights;
+    this.fitness = fitness;
+  }
+
+  private void randomWeightVector(SplittableRandom random) {
+    weights = new double[Constant.NUMB_FEATURES];
+    for (int i = 0; i < Constant.NUMB_FEATURES; i++) {
+      weights[i] = Math.abs(Fitness.randomReal(random) * 10) * Constant.FEATURE_TYPE[i];
+    }
+  }
+
+  public void updateFitness() {
+    updateFitness(ThreadController.getInstance().currentBatch());
+  }
+
+  // evaluate as part of batch instead of through ThreadController.waitFinishUpdate
+  public void updateFitness(ThreadController.Batch batch) {
+    updateFitness(batch, null);
+  }
+
+  // evaluate as part of batch, cancelling the games once the mean can no
+  // longer beat cutoff - needs a cap on the pieces per game
+  public void updateFitness(ThreadController.Batch batch, int cutoff) {
+    RaceTracker race = null;
+    int maxPieces = PlayerThread.getMaxPiecesPerGame();
+    if (maxPieces > 0) {
+      race = new RaceTracker(cutoff, Constant.NUMB_GAMES_PER_UPDATE, maxPieces);
+    }
+    updateFitness(batch, race);
+  }
+
+  private void updateFitness(ThreadController.Batch batch, RaceTracker race) {
+    FitnessCache cache = FitnessCache.getInstance();
+    EvaluationCoordinator coordinator = EvaluationCoordinator.getInstance();
+    for (int i = 0; i < Constant.NUMB_GAMES_PER_UPDATE; i++) {
+      long randomSeed = Constant.SEEDS[i];
+      if (cache != null) {
+        int rowsCleared = cache.get(weights, randomSeed);
+        if (rowsCleared >= 0) {
+          fitness.add(rowsCleared);
+          if (race != null) {
+            race.finish(rowsCleared);
+          }
+          continue;
+        }
+      }
+      if (coordinator != null) {
+        batch.add(coordinator.submit(weights, randomSeed).thenAccept(rowsCleared -> {
+          fitness.add(rowsCleared);
+          if (race != null) {
+            race.finish(rowsCleared);
+          }
+          if (cache != null) {
+            cache.put(weights, randomSeed, rowsCleared);
+          }
+        }));
+        continue;
+      }
+      String threadName = this.toString() + " #" + i;
+
+      PlayerThread game = new PlayerThread(threadName, randomSeed, weights, fitness);
+      game.setRace(race);
+      game.setResultCache(cache);
+      batch.submit(game);
+    }
+  }
+
+  public static Person crossOver(Person self, Person other, SplittableRandom random) {
+    double[] weights = Arrays.copyOf(self.weights, self.weights.length);
+    for (int i = 0; i < weights.length; i++) {
+      if (Fitness.flipCoin(random)) {
+        weights[i] = other.weights[i];
+      }
+    }
+    return new Person(weights);
+  }
+
+  public static Person mutate(Person self, int mutateLocation, SplittableRandom random) {
+    double[] weights = Arrays.copyOf(self.weights, self.weights.length);
+    weights[mutateLocation] += Fitness.randomReal(random) * 2;
+    return new Person(weights);
+  }
+
+  // best first, older first among equals - the order a stable sort of the
+  // population keeps, and a total order for ConcurrentSkipListSet
+  public int compareTo(Person other) {
+    int byFitness = Integer.compare(other.fitness.getValue(), this.fitness.getValue());
+    return byFitness != 0 ? byFitness : Long.compare(this.id, other.id);
+  }
+
+  // completes once every game of updateFitness has been recorded
+  public CompletableFuture<Void> evaluation() {
+    return fitness.whenComplete(Constant.NUMB_GAMES_PER_UPDATE);
+  }
+
+  public void setWeights(double[] weights) {
+    this.weights = weights;
+  }
+
+  public double[] getWeights() {
+    return weights;
+  }
+
+  public FitnessAccumulator getFitness() {
+    return this.fitness;
+  }
+
+  public Person clone() {
+    return new Person(Arrays.copyOf(weights, weights.length));
+  }
+
+  public String toString() {
+    StringBuilder text = new StringBuilder(weights.length * 24);
+    for (double weight : weights) {
+      text.append('|').append(weight);
+    }
+    return text.toString();
+  }
+
+}
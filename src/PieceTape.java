@@ -0,0 +1,93 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The pieces of a game seed, dealt once from the same generator as
+// AdvancedState and packed 3 bits per piece, 21 to a long. Every game of a
+// seed reads the same read-only tape instead of drawing its pieces again.
+// Tapes above Constant.PIECE_TAPE_MAPPED_BYTES are kept in a memory-mapped
+// temporary file rather than on the heap.
+public class PieceTape {
+
+  private static final int PIECES_PER_WORD = 21;
+  // length of the tapes when games are not capped, games that outlast a tape
+  // go on drawing from the generator
+  private static final int UNCAPPED_PIECES = 1 << 20;
+
+  private static final ConcurrentHashMap<Long, PieceTape> tapes = new ConcurrentHashMap<Long, PieceTape>();
+
+  private final long seed;
+  private final int length;
+  private final LongBuffer words;
+
+  private PieceTape(long seed, int length) {
+    this.seed = seed;
+    this.length = length;
+    int numWords = (length + PIECES_PER_WORD - 1) / PIECES_PER_WORD;
+    LongBuffer buffer = null;
+    if ((long) numWords * Long.BYTES > Constant.PIECE_TAPE_MAPPED_BYTES) {
+      buffer = mapTemporaryFile(numWords);
+    }
+    if (buffer == null) {
+      buffer = LongBuffer.allocate(numWords);
+    }
+    SplittableRandom random = new SplittableRandom(seed);
+    for (int w = 0; w < numWords; w++) {
+      long word = 0;
+      for (int i = 0; i < PIECES_PER_WORD && w * PIECES_PER_WORD + i < length; i++) {
+        word |= (long) random.nextInt(State.N_PIECES) << (3 * i);
+      }
+      buffer.put(w, word);
+    }
+    this.words = buffer.asReadOnlyBuffer();
+  }
+
+  // tape of seed long enough for a game of PlayerThread.getMaxPiecesPerGame()
+  // pieces, dealt by the first game that asks for it
+  public static PieceTape forSeed(long seed) {
+    int maxPieces = PlayerThread.getMaxPiecesPerGame();
+    int length = maxPieces > 0 ? maxPieces + 1 : UNCAPPED_PIECES;
+    return tapes.computeIfAbsent(seed, s -> new PieceTape(s, length));
+  }
+
+  private static LongBuffer mapTemporaryFile(int numWords) {
+    try {
+      File file = File.createTempFile("pieces", ".tape");
+      file.deleteOnExit();
+      try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+        // the mapping stays valid once the file is closed
+        return out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, (long) numWords * Long.BYTES)
+            .asLongBuffer();
+      }
+    } catch (IOException e) {
+      System.out.println("Couldn't map piece tape, keeping it on the heap: " + e.getMessage());
+      return null;
+    }
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public int length() {
+    return length;
+  }
+
+  // the index-th piece of the game, index below length()
+  public int get(int index) {
+    return (int) (words.get(index / PIECES_PER_WORD) >>> (3 * (index % PIECES_PER_WORD))) & 7;
+  }
+
+  // the generator of the seed after the pieces of the tape
+  public SplittableRandom generatorAfterTape() {
+    SplittableRandom random = new SplittableRandom(seed);
+    for (int i = 0; i < length; i++) {
+      random.nextInt(State.N_PIECES);
+    }
+    return random;
+  }
+}
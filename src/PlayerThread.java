@@ -1,130 +1,194 @@
+import java.util.Arrays;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
 
-public class PlayerThread extends Thread {
+// One game as a task - call() plays it to the end and returns the rows cleared.
+// A plain Callable so that games run on pooled or virtual threads instead of
+// each owning a Thread.
+public class PlayerThread implements Runnable, Callable<Integer> {
+
+  // pieces played between two looks at the race
+  private static final int RACE_CHECK_INTERVAL = 256;
+
+  // cap on the pieces of a game, Constant.MAX_PIECES_PER_GAME unless changed
+  // before the first game starts
+  private static int maxPiecesPerGame = Constant.MAX_PIECES_PER_GAME;
+  // totals of every game played, null when nobody is measuring
+  private static volatile GameStats gameStats;
 
-  private Thread thread;
   private double[] weights;
   private String threadName;
   private int totalRowsCleared = 0;
   private long randomSeed;
-  private AtomicInteger valueToUpdate;
+  private FitnessAccumulator valueToUpdate;
+  // racing against the other games of the same Person, null plays to the end
+  private RaceTracker race;
+  // where the result of a game played to the end is memoized, null for none
+  private FitnessCache resultCache;
+  // spread the root moves of look-ahead decisions over the fork/join pool
+  private boolean parallelSearch = Constant.PARALLEL_SEARCH;
+  // strategy to play with, null plays with pickMove or the beam search
+  private MovePicker movePicker;
+  // best look-ahead fitness per (board, piece, rows cleared since the root,
+  // depth), created with the first look-ahead decision
+  private TranspositionCache cache;
+
+  // beam search - only the beamWidth best moves by one-ply fitness are searched
+  // beamDepth pieces deeper, 0 beamWidth plays with pickMove instead
+  private int beamWidth = Constant.BEAM_WIDTH;
+  private int beamDepth = Constant.BEAM_DEPTH;
+  // move evaluations skipped as mirror images on symmetric boards
+  private LongAdder savedEvaluations = new LongAdder();
+  // kept moves and their one-ply fitness for every level of the beam
+  private int[][] beamMoves;
+  private double[][] beamFitness;
 
-  public PlayerThread(String threadName, long randomSeed, double[] weights, AtomicInteger valueToUpdate) {
+  public PlayerThread(String threadName, long randomSeed, double[] weights, FitnessAccumulator valueToUpdate) {
     this.threadName = threadName;
     this.weights = weights;
     this.randomSeed = randomSeed;
     this.valueToUpdate = valueToUpdate;
+    if (Constant.EXPECTIMAX_DEPTH > 0) {
+      this.movePicker = new ExpectimaxPicker(weights, Constant.EXPECTIMAX_DEPTH, Constant.MOVE_TIME_BUDGET_MS);
+    }
   }
 
-  private double computeFitness(AdvancedState oldState, AdvancedState newState, int move, int rowsCleared) {
-    int piece = oldState.getNextPiece();
-    int orient = oldState.legalMoves()[move][AdvancedState.ORIENT];
-    int slot = oldState.legalMoves()[move][AdvancedState.SLOT];
-    int pieceWidth = oldState.pWidth[piece][orient];
-    int pieceHeight = oldState.pHeight[piece][orient];
-    int landingHeight = Fitness.arrayMax(oldState.top, slot, slot + pieceWidth) + pieceHeight / 2;
-
-    int rowsEliminated = newState.getRowsCleared() - oldState.getRowsCleared() + rowsCleared;
-    int bumpiness = newState.getBumpiness();
-    int numHoles = newState.getNumHoles();
-    int wellSum = newState.getWellSum();
-
-    double fitness = weights[Constant.LANDING_HEIGHT] * landingHeight
-        + weights[Constant.ROW_ELIMINATED] * rowsEliminated + weights[Constant.NUM_HOLES] * numHoles
-        + weights[Constant.BUMPINESS] * bumpiness + weights[Constant.WELL_SUM] * wellSum;
-
-    return fitness;
-  }
-
-  private double computeFitnessWithLookAhead(AdvancedState oldState, AdvancedState newState) {
-    int rowsCleared = newState.getRowsCleared() - oldState.getRowsCleared();
+  private double computeFitnessWithLookAhead(AdvancedState state, int rowsCleared) {
     double totalFitness = 0;
+    boolean symmetric = state.isMirrorSymmetric();
+    long boardKey = 0;
+    if (cache != null) {
+      boardKey = state.searchKey(rowsCleared, 1);
+    }
     // Look-ahead try all possible move
+    double pieceFitness = -Double.MAX_VALUE;
     for (int i = 0; i < AdvancedState.N_PIECES; i++) {
-      newState.setNextPiece(i);
-
-      // Find best move if the next piece is i
-      double tempBestFitness = -Double.MAX_VALUE;
-      int tempBestMove = -1;
-      for (int move = 0; move < newState.legalMoves().length; move++) {
-        AdvancedState lookAheadState = newState.clone();
-        lookAheadState.makeMove(move);
-        if (lookAheadState.hasLost()) {
-          continue;
-        }
-
-        double fitness = computeFitness(newState, lookAheadState, move, rowsCleared);
-        if (fitness > tempBestFitness) {
-          tempBestFitness = fitness;
-          tempBestMove = move;
+      if (symmetric && AdvancedState.pieceMirror[i] == i - 1) {
+        // same as the previous piece, its mirror image
+        savedEvaluations.add(AdvancedState.legalMoves[i].length);
+      } else if (cache == null) {
+        pieceFitness = computeBestFitness(state, i, rowsCleared, symmetric);
+      } else {
+        long key = boardKey ^ AdvancedState.ZOBRIST_PIECE[i];
+        pieceFitness = cache.get(key);
+        if (Double.isNaN(pieceFitness)) {
+          pieceFitness = computeBestFitness(state, i, rowsCleared, symmetric);
+          cache.put(key, pieceFitness);
         }
       }
 
-      if (tempBestMove != -1) {
-        totalFitness += tempBestFitness;
+      // -Double.MAX_VALUE when every move of piece i loses
+      if (pieceFitness != -Double.MAX_VALUE) {
+        totalFitness += pieceFitness;
       }
 
     }
     return totalFitness;
   }
 
-  private double computeFitnessWithTwoLookAhead(AdvancedState oldState, AdvancedState newState,
-      AdvancedState nextState) {
-    int rowsCleared = nextState.getRowsCleared() - newState.getRowsCleared() - oldState.getRowsCleared();
-    double totalFitness = 0;
+  // fitness of the best move if the next piece is piece, -Double.MAX_VALUE if
+  // they all lose
+  private double computeBestFitness(AdvancedState state, int piece, int rowsCleared, boolean symmetric) {
+    boolean bound = Fitness.canBound(weights);
+    state.setNextPiece(piece);
 
-    // look-two-ahead try all possible moves
-    for (int i = 0; i < AdvancedState.N_PIECES; i++) {
-      newState.setNextPiece(i);
-      // Find best move if the next piece is i
-      double tempBestFitness = -Double.MAX_VALUE;
-      int tempBestMove = -1;
-      for (int move = 0; move < newState.legalMoves().length; move++) {
-        AdvancedState lookAheadState = newState.clone();
-        lookAheadState.makeMove(move);
-        if (lookAheadState.hasLost()) {
-          continue;
-        } else {
-          for (int moves = 0; moves < nextState.legalMoves().length; moves++) {
-            AdvancedState twoAheadState = lookAheadState.clone();
-            twoAheadState.makeMove(moves);
-            if (twoAheadState.hasLost()) {
-              continue;
-            }
-            double fitness = computeFitness(lookAheadState, twoAheadState, moves, rowsCleared);
-            if (fitness > tempBestFitness) {
-              tempBestFitness = fitness;
-              tempBestMove = moves;
-            }
-          }
+    double tempBestFitness = -Double.MAX_VALUE;
+    int tempBestMove = -1;
+    for (int move = 0; move < state.legalMoves().length; move++) {
+      if (state.isMirrorDuplicate(move, symmetric)) {
+        savedEvaluations.increment();
+        continue;
+      }
+      // skip moves that can not beat the best one so far
+      if (bound && tempBestMove != -1
+          && Fitness.fitnessUpperBound(weights, state, move, rowsCleared) <= tempBestFitness) {
+        continue;
+      }
+      int landingHeight = Fitness.landingHeight(state, move);
+      int rowsBefore = state.getRowsCleared();
+      if (state.tryMove(move)) {
+        int rowsEliminated = state.getRowsCleared() - rowsBefore + rowsCleared;
+        double fitness = Fitness.computeFitness(weights, state, landingHeight, rowsEliminated);
+        if (fitness > tempBestFitness) {
+          tempBestFitness = fitness;
+          tempBestMove = move;
         }
-
       }
-      if (tempBestMove != -1) {
-        totalFitness += tempBestFitness;
+      state.undoMove();
+    }
+    return tempBestFitness;
+  }
+
+  // fitness of playing move from state, NaN if the move loses - state is left
+  // as it was
+  private double evaluateRootMove(AdvancedState state, int move, boolean lookAhead) {
+    int landingHeight = Fitness.landingHeight(state, move);
+    int rowsBefore = state.getRowsCleared();
+    double fitness = Double.NaN;
+    if (state.tryMove(move)) {
+      int rowsCleared = state.getRowsCleared() - rowsBefore;
+      if (lookAhead) {
+        fitness = computeFitnessWithLookAhead(state, rowsCleared);
+      } else {
+        fitness = Fitness.computeFitness(weights, state, landingHeight, rowsCleared);
       }
     }
-    return totalFitness;
+    state.undoMove();
+    return fitness;
+  }
+
+  private void createCache() {
+    if (cache == null && Constant.TRANSPOSITION_CACHE_BYTES > 0) {
+      cache = new TranspositionCache(Constant.TRANSPOSITION_CACHE_BYTES);
+    }
   }
 
-  // implement this function to have a working system
-  private int pickMove(AdvancedState state, int[][] legalMoves) {
+  // implement this function to have a working system - package-private so
+  // that Benchmarks can time it
+  int pickMove(AdvancedState state, int[][] legalMoves) {
     double bestFitness = -Double.MAX_VALUE;
     int bestMove = 0;
+    boolean lookAhead = state.getHighestColumn() > 10;
+
+    SearchMetrics metrics = state.getMetrics();
+    if (lookAhead) {
+      createCache();
+      if (metrics != null) {
+        metrics.countLookAhead();
+      }
+    }
+
+    double[] rootFitness = null;
+    if (lookAhead && parallelSearch) {
+      rootFitness = new double[legalMoves.length];
+      SearchMetrics[] rootMetrics = metrics == null ? null : new SearchMetrics[legalMoves.length];
+      ForkJoinPool.commonPool().invoke(new RootMoves(state, rootFitness, rootMetrics, 0, legalMoves.length));
+      if (rootMetrics != null) {
+        for (SearchMetrics searched : rootMetrics) {
+          if (searched != null) {
+            metrics.add(searched);
+          }
+        }
+      }
+    }
 
-    // System.out.println("rows: " + state.getRowsCleared());
-    // System.out.println("Start picking moves");
+    boolean symmetric = state.isMirrorSymmetric();
     for (int move = 0; move < legalMoves.length; move++) {
-      AdvancedState cs = state.clone();
-      cs.makeMove(move);
-      if (cs.hasLost()) {
+      // a mirror image scores the same as the lower move it mirrors
+      if (state.isMirrorDuplicate(move, symmetric)) {
+        savedEvaluations.increment();
         continue;
       }
       double fitness;
-      if (state.getHighestColumn() > 10) {
-        fitness = computeFitnessWithLookAhead(state, cs);
+      if (rootFitness != null) {
+        fitness = rootFitness[move];
       } else {
-        fitness = computeFitness(state, cs, move, 0);
+        fitness = evaluateRootMove(state, move, lookAhead);
+      }
+      if (Double.isNaN(fitness)) {
+        continue;
       }
       if (fitness > bestFitness) {
         bestFitness = fitness;
@@ -135,77 +199,339 @@ public class PlayerThread extends Thread {
     return bestMove;
   }
 
-  private int pickMoveForTwoAhead(AdvancedState state, int[][] legalMoves) {
-    double bestFitness = -Double.MAX_VALUE;
-    int bestMove = 0;
+  // evaluates the look-ahead fitness of a range of root moves, splitting down to
+  // one move per task - every task searches its own clone of the state. The
+  // fitness values are reduced in move order by pickMove so the chosen move is
+  // the same as with the sequential search, and so are the search metrics of
+  // every task when the game is counting.
+  private class RootMoves extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
 
-    for (int move = 0; move < legalMoves.length; move++) {
-      AdvancedState cs = state.clone();
-      cs.makeMove(move);
-      if (cs.hasLost()) {
+    private final AdvancedState state;
+    private final double[] fitness;
+    private final SearchMetrics[] metrics;
+    private final int from;
+    private final int to;
+
+    RootMoves(AdvancedState state, double[] fitness, SearchMetrics[] metrics, int from, int to) {
+      this.state = state;
+      this.fitness = fitness;
+      this.metrics = metrics;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from == 1) {
+        if (!state.isMirrorDuplicate(from, state.isMirrorSymmetric())) {
+          SearchMetrics searched = null;
+          if (metrics != null) {
+            searched = new SearchMetrics();
+            metrics[from] = searched;
+          }
+          fitness[from] = evaluateRootMove(state.clone(searched), from, true);
+        }
+        return;
+      }
+      int mid = (from + to) >>> 1;
+      invokeAll(new RootMoves(state, fitness, metrics, from, mid), new RootMoves(state, fitness, metrics, mid, to));
+    }
+  }
+
+  // keeps the beamWidth best moves of the piece to play by one-ply fitness in
+  // beamMoves[level] / beamFitness[level], best first and ties in move order -
+  // returns how many were kept, moves that lose are never kept
+  private int selectBeam(AdvancedState state, int level, int rowsCleared) {
+    int[] moves = beamMoves[level];
+    double[] fitness = beamFitness[level];
+    int kept = 0;
+    int numMoves = state.legalMoves().length;
+    boolean symmetric = state.isMirrorSymmetric();
+    for (int move = 0; move < numMoves; move++) {
+      if (state.isMirrorDuplicate(move, symmetric)) {
+        savedEvaluations.increment();
         continue;
-      } else {
-        int[][] legal = cs.legalMoves();
-        for (int moves = 0; moves < legal.length; moves++) {
-          AdvancedState css = cs.clone();
-          css.makeMove(moves);
-          if (css.hasLost()) {
-            continue;
-          } else {
-            double fitness;
-            if (cs.getHighestColumn() > 10) {
-              fitness = computeFitnessWithTwoLookAhead(state, cs, css);
-            } else {
-              fitness = computeFitness(cs, css, moves, 0);
-            }
-            if (fitness > bestFitness) {
-              bestFitness = fitness;
-              bestMove = move;
-            }
+      }
+      int landingHeight = Fitness.landingHeight(state, move);
+      int rowsBefore = state.getRowsCleared();
+      if (state.tryMove(move)) {
+        int rowsEliminated = state.getRowsCleared() - rowsBefore + rowsCleared;
+        double f = Fitness.computeFitness(weights, state, landingHeight, rowsEliminated);
+        if (kept < beamWidth || f > fitness[kept - 1]) {
+          int i = kept < beamWidth ? kept++ : kept - 1;
+          while (i > 0 && f > fitness[i - 1]) {
+            moves[i] = moves[i - 1];
+            fitness[i] = fitness[i - 1];
+            i--;
           }
+          moves[i] = move;
+          fitness[i] = f;
+        }
+      }
+      state.undoMove();
+    }
+    return kept;
+  }
+
+  // sum over the next piece of the best value reachable depth pieces ahead,
+  // searching only the beam of each piece
+  private double computeFitnessWithBeam(AdvancedState state, int level, int depth, int rowsCleared) {
+    double totalFitness = 0;
+    boolean symmetric = state.isMirrorSymmetric();
+    long boardKey = 0;
+    if (cache != null) {
+      boardKey = state.searchKey(rowsCleared, depth);
+    }
+    double pieceFitness = -Double.MAX_VALUE;
+    for (int i = 0; i < AdvancedState.N_PIECES; i++) {
+      if (symmetric && AdvancedState.pieceMirror[i] == i - 1) {
+        // same as the previous piece, its mirror image
+        savedEvaluations.add(AdvancedState.legalMoves[i].length);
+      } else if (cache == null) {
+        pieceFitness = computeBestFitnessWithBeam(state, i, level, depth, rowsCleared);
+      } else {
+        long key = boardKey ^ AdvancedState.ZOBRIST_PIECE[i];
+        pieceFitness = cache.get(key);
+        if (Double.isNaN(pieceFitness)) {
+          pieceFitness = computeBestFitnessWithBeam(state, i, level, depth, rowsCleared);
+          cache.put(key, pieceFitness);
         }
       }
 
+      // -Double.MAX_VALUE when every move of piece i loses
+      if (pieceFitness != -Double.MAX_VALUE) {
+        totalFitness += pieceFitness;
+      }
+    }
+    return totalFitness;
+  }
+
+  // best value of the beam of piece reachable depth pieces ahead,
+  // -Double.MAX_VALUE if every move loses
+  private double computeBestFitnessWithBeam(AdvancedState state, int piece, int level, int depth,
+      int rowsCleared) {
+    state.setNextPiece(piece);
+    int kept = selectBeam(state, level, rowsCleared);
+    if (kept == 0 || depth == 1) {
+      return kept == 0 ? -Double.MAX_VALUE : beamFitness[level][0];
+    }
+
+    double tempBestFitness = -Double.MAX_VALUE;
+    for (int k = 0; k < kept; k++) {
+      int rowsBefore = state.getRowsCleared();
+      state.tryMove(beamMoves[level][k]);
+      int rowsEliminated = state.getRowsCleared() - rowsBefore + rowsCleared;
+      double fitness = computeFitnessWithBeam(state, level + 1, depth - 1, rowsEliminated);
+      state.undoMove();
+      tempBestFitness = Math.max(tempBestFitness, fitness);
+    }
+    return tempBestFitness;
+  }
+
+  // look-ahead beamDepth pieces deep from the beamWidth best root moves. Low
+  // stacks are played one-ply by pickMove as they are not worth the search.
+  private int pickMoveWithBeam(AdvancedState state, int[][] legalMoves) {
+    if (state.getHighestColumn() <= 10) {
+      return pickMove(state, legalMoves);
+    }
+    if (state.getMetrics() != null) {
+      state.getMetrics().countLookAhead();
+    }
+    if (beamMoves == null) {
+      beamMoves = new int[beamDepth + 1][beamWidth];
+      beamFitness = new double[beamDepth + 1][beamWidth];
+    }
+    createCache();
+
+    double bestFitness = -Double.MAX_VALUE;
+    int bestMove = 0;
+    int kept = selectBeam(state, 0, 0);
+    for (int k = 0; k < kept; k++) {
+      int move = beamMoves[0][k];
+      int rowsBefore = state.getRowsCleared();
+      state.tryMove(move);
+      int rowsCleared = state.getRowsCleared() - rowsBefore;
+      double fitness = beamFitness[0][k];
+      if (beamDepth > 0) {
+        fitness = computeFitnessWithBeam(state, 1, beamDepth, rowsCleared);
+      }
+      state.undoMove();
+      if (fitness > bestFitness || (fitness == bestFitness && move < bestMove)) {
+        bestFitness = fitness;
+        bestMove = move;
+      }
     }
 
     return bestMove;
   }
 
-  /*
-   * public static void main(String[] args) { State s = new State(); new
-   * TFrame(s); PlayerSkeleton p = new PlayerSkeleton(); while(!s.hasLost()) {
-   * s.makeMove(p.pickMove(s,s.legalMoves())); s.draw(); s.drawNext(0,0); try {
-   * Thread.sleep(300); } catch (InterruptedException e) { e.printStackTrace(); }
-   * } System.out.println("You have completed "+s.getRowsCleared()+" rows."); }
-   */
+  // java PlayerThread [--parallel] plays a game in a TFrame with
+  // Constant.PLAY_WEIGHTS, --parallel or Constant.PARALLEL_SEARCH spread the
+  // look-ahead over the fork/join pool
+  public static void main(String[] args) {
+    State.initializeLegalMoves();
+    long seed = System.nanoTime();
+    PlayerThread p = new PlayerThread("interactive", seed, Constant.PLAY_WEIGHTS, new FitnessAccumulator());
+    if (Arrays.asList(args).contains("--parallel")) {
+      p.setParallelSearch(true);
+    }
+    MovePicker picker = p.picker();
+    AdvancedState s = new AdvancedState(seed);
+    new TFrame(s);
+    while (!s.hasLost()) {
+      s.makeMove(picker.pickMove(s, s.legalMoves()));
+      s.draw();
+      s.drawNext(0, 0);
+      try {
+        Thread.sleep(300);
+      } catch (InterruptedException e) {
+        e.printStackTrace();
+      }
+    }
+    System.out.println("You have completed " + s.getRowsCleared() + " rows.");
+  }
+
+  // what the game is played with - movePicker, else the beam search or pickMove
+  private MovePicker picker() {
+    if (movePicker != null) {
+      return movePicker;
+    }
+    return beamWidth > 0 ? this::pickMoveWithBeam : this::pickMove;
+  }
 
   public void run() {
+    call();
+  }
+
+  public Integer call() {
 
     try {
-      AdvancedState s = new AdvancedState(randomSeed);
-      while (!s.hasLost()) {
-        s.makeMove(pickMove(s, s.legalMoves()));
+      MovePicker picker = picker();
+      long start = System.nanoTime();
+      AdvancedState s = Constant.PIECE_TAPES ? new AdvancedState(PieceTape.forSeed(randomSeed))
+          : new AdvancedState(randomSeed);
+      SearchMetrics metrics = SearchMetrics.startGame();
+      s.setMetrics(metrics);
+      boolean cancelled = false;
+      while (!s.hasLost() && (maxPiecesPerGame == 0 || s.getTurnNumber() < maxPiecesPerGame)) {
+        if (race != null && s.getTurnNumber() % RACE_CHECK_INTERVAL == 0 && race.isCancelled()) {
+          cancelled = true;
+          break;
+        }
+        long decisionStart = System.nanoTime();
+        long nodesBefore = metrics.getNodes();
+        int move = picker.pickMove(s, s.legalMoves());
+        metrics.countDecision(System.nanoTime() - decisionStart, metrics.getNodes() - nodesBefore);
+        s.makeMove(move);
         totalRowsCleared = s.getRowsCleared();
       }
-      valueToUpdate.updateValue(totalRowsCleared);
-      System.out.println("Finished: " + totalRowsCleared);
+      SearchMetrics.finishGame(metrics);
+      // a cancelled game still counts what it cleared so far, which keeps the
+      // mean below the cutoff it could not beat
+      valueToUpdate.add(totalRowsCleared);
+      if (cancelled) {
+        race.cancel();
+      } else {
+        if (race != null) {
+          race.finish(totalRowsCleared);
+        }
+        if (resultCache != null) {
+          resultCache.put(weights, randomSeed, totalRowsCleared);
+        }
+      }
+      long nanos = System.nanoTime() - start;
+      logGame(s.getTurnNumber(), cancelled, nanos, metrics);
+      GameStats stats = gameStats;
+      if (stats != null) {
+        stats.record(s.getTurnNumber(), nanos);
+      }
     } catch (Exception e) {
       System.out.println("ERROR: Thread failed to update fitness value");
       e.printStackTrace();
       System.exit(1);
     }
+    return totalRowsCleared;
   }
 
-  public void start() {
-    if (thread == null) {
-      thread = new Thread(this, threadName);
-      thread.start();
+  private void logGame(int pieces, boolean cancelled, long nanos, SearchMetrics metrics) {
+    StringBuilder json = new StringBuilder(256);
+    json.append("{\"type\":\"game\",\"seed\":").append(randomSeed).append(",\"weights\":[");
+    for (int i = 0; i < weights.length; i++) {
+      json.append(i == 0 ? "" : ",").append(weights[i]);
     }
+    json.append("],\"rows\":").append(totalRowsCleared)
+        .append(",\"pieces\":").append(pieces)
+        .append(",\"cancelled\":").append(cancelled)
+        .append(",\"millis\":").append(nanos / 1000000)
+        .append(",\"mirroredSkipped\":").append(savedEvaluations.sum());
+    metrics.appendJson(json);
+    if (cache != null) {
+      json.append(",\"cacheHits\":").append(cache.getHits()).append(",\"cacheMisses\":").append(cache.getMisses());
+    }
+    AsyncLogger.getInstance().record(json.append('}').toString());
   }
 
   // Setters + getters
+  public static int getMaxPiecesPerGame() {
+    return maxPiecesPerGame;
+  }
+
+  public static void setMaxPiecesPerGame(int maxPieces) {
+    maxPiecesPerGame = maxPieces;
+  }
+
+  public static void setGameStats(GameStats stats) {
+    gameStats = stats;
+  }
+
+  public String getName() {
+    return threadName;
+  }
+
   public int getTotalRowsCleared() {
     return totalRowsCleared;
   }
 
+  // look-ahead cache of the game, null until the first look-ahead decision
+  public TranspositionCache getCache() {
+    return cache;
+  }
+
+  // move evaluations the search skipped as mirror images of other moves
+  public long getSavedEvaluations() {
+    return savedEvaluations.sum();
+  }
+
+  public void setRace(RaceTracker race) {
+    this.race = race;
+  }
+
+  public void setResultCache(FitnessCache resultCache) {
+    this.resultCache = resultCache;
+  }
+
+  // play with picker instead of pickMove or the beam search, null goes back
+  public void setMovePicker(MovePicker movePicker) {
+    this.movePicker = movePicker;
+  }
+
+  // search only the width best moves of every piece by one-ply fitness, depth
+  // pieces past the root move - 0 width goes back to pickMove
+  public void setBeamSearch(int width, int depth) {
+    if (width < 0 || depth < 0 || depth > AdvancedState.MAX_SEARCH_DEPTH) {
+      throw new IllegalArgumentException("Invalid beam width " + width + " or depth " + depth);
+    }
+    this.beamWidth = width;
+    this.beamDepth = depth;
+    this.beamMoves = null;
+    this.beamFitness = null;
+  }
+
+  // for interactive play where the latency of a single decision matters more
+  // than the throughput of many games running side by side
+  public void setParallelSearch(boolean parallelSearch) {
+    this.parallelSearch = parallelSearch;
+  }
+
 }
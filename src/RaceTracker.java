@@ -0,0 +1,52 @@
+import java.util.concurrent.atomic.LongAdder;
+
+// Racing evaluation of the games of one Person. The Person only survives
+// refinePopulation if its mean rows cleared beats cutoff, the fitness of the
+// worst survivor. Every piece fills 4 cells and a cleared row takes COLS of
+// them, so a game of at most maxPieces pieces clears at most 4 * maxPieces /
+// COLS rows. Once the finished games plus that bound for the others can no
+// longer beat cutoff, the remaining games are cancelled.
+public class RaceTracker {
+
+  private static final int CELLS_PER_PIECE = 4;
+
+  private static final LongAdder cancelledGames = new LongAdder();
+
+  private final int cutoff;
+  private final int games;
+  private final long maxRowsPerGame;
+
+  private long finishedRows = 0;
+  private int finished = 0;
+  private volatile boolean cancelled = false;
+
+  public RaceTracker(int cutoff, int games, int maxPieces) {
+    this.cutoff = cutoff;
+    this.games = games;
+    this.maxRowsPerGame = (long) CELLS_PER_PIECE * maxPieces / State.COLS;
+  }
+
+  // records a game played to the end
+  public synchronized void finish(int rowsCleared) {
+    finished++;
+    finishedRows += rowsCleared;
+    long bestTotal = finishedRows + (games - finished) * maxRowsPerGame;
+    if (finished < games && bestTotal / games <= cutoff) {
+      cancelled = true;
+    }
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  // records a game stopped early because of isCancelled()
+  public void cancel() {
+    cancelledGames.increment();
+  }
+
+  // games cancelled by all trackers so far
+  public static long getCancelledGames() {
+    return cancelledGames.sum();
+  }
+}
@@ -0,0 +1,370 @@
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Hot-path counters of one game - placements played, nodes searched
+// (tryMove), clones, feature evaluations, look-ahead decisions and histograms
+// of decision latency and nodes per decision. They are plain fields only ever
+// written by the thread playing the game, and are folded into the process
+// totals once the game ends. total() also adds up the games still being
+// played, whose counters may be read a little stale. Folding a game and
+// taking a total hold the same lock, so a game that just ended is never
+// counted both as finished and as still being played.
+public class SearchMetrics {
+
+  // histogram bucket b counts values in [2^b, 2^(b + 1)), bucket 0 also 0
+  public static final int BUCKETS = 64;
+
+  // counters of the finished games
+  private static final LongAdder finishedGames = new LongAdder();
+  private static final LongAdder finishedPlacements = new LongAdder();
+  private static final LongAdder finishedNodes = new LongAdder();
+  private static final LongAdder finishedClones = new LongAdder();
+  private static final LongAdder finishedEvaluations = new LongAdder();
+  private static final LongAdder finishedLookAheads = new LongAdder();
+  private static final LongAdder finishedDecisions = new LongAdder();
+  private static final LongAdder[] finishedLatencyHistogram = new LongAdder[BUCKETS];
+  private static final LongAdder[] finishedNodesHistogram = new LongAdder[BUCKETS];
+  private static final Set<SearchMetrics> active = ConcurrentHashMap.newKeySet();
+  private static final Object foldLock = new Object();
+  private static boolean registered = false;
+
+  static {
+    for (int b = 0; b < BUCKETS; b++) {
+      finishedLatencyHistogram[b] = new LongAdder();
+      finishedNodesHistogram[b] = new LongAdder();
+    }
+  }
+
+  private long placements;
+  private long nodes;
+  private long clones;
+  private long featureEvaluations;
+  private long lookAheads;
+  private long decisions;
+  // created with the first decision, the root moves of a parallel search
+  // only count nodes
+  private long[] latency;
+  private long[] nodesPerDecision;
+  private long games;
+
+  public void countPlacement() {
+    placements++;
+  }
+
+  public void countNode() {
+    nodes++;
+  }
+
+  public void countClone() {
+    clones++;
+  }
+
+  public void countFeatureEvaluation() {
+    featureEvaluations++;
+  }
+
+  public void countLookAhead() {
+    lookAheads++;
+  }
+
+  // a move decided in nanos after searching nodes nodes
+  public void countDecision(long nanos, long nodes) {
+    if (latency == null) {
+      latency = new long[BUCKETS];
+      nodesPerDecision = new long[BUCKETS];
+    }
+    decisions++;
+    latency[bucket(nanos)]++;
+    nodesPerDecision[bucket(nodes)]++;
+  }
+
+  // adds the counters of metrics, which must no longer be written
+  public void add(SearchMetrics metrics) {
+    placements += metrics.placements;
+    nodes += metrics.nodes;
+    clones += metrics.clones;
+    featureEvaluations += metrics.featureEvaluations;
+    lookAheads += metrics.lookAheads;
+    decisions += metrics.decisions;
+  }
+
+  private static int bucket(long value) {
+    return value <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(value);
+  }
+
+  // counters of a game starting on this thread, included in total() from now on
+  public static SearchMetrics startGame() {
+    SearchMetrics metrics = new SearchMetrics();
+    active.add(metrics);
+    return metrics;
+  }
+
+  // folds the counters of a game from startGame into the totals
+  public static void finishGame(SearchMetrics metrics) {
+    synchronized (foldLock) {
+      fold(metrics);
+      active.remove(metrics);
+    }
+  }
+
+  private static void fold(SearchMetrics metrics) {
+    finishedPlacements.add(metrics.placements);
+    finishedNodes.add(metrics.nodes);
+    finishedClones.add(metrics.clones);
+    finishedEvaluations.add(metrics.featureEvaluations);
+    finishedLookAheads.add(metrics.lookAheads);
+    finishedDecisions.add(metrics.decisions);
+    if (metrics.latency != null) {
+      for (int b = 0; b < BUCKETS; b++) {
+        if (metrics.latency[b] != 0) {
+          finishedLatencyHistogram[b].add(metrics.latency[b]);
+        }
+        if (metrics.nodesPerDecision[b] != 0) {
+          finishedNodesHistogram[b].add(metrics.nodesPerDecision[b]);
+        }
+      }
+    }
+    finishedGames.increment();
+  }
+
+  // counters of every game finished or being played so far
+  public static SearchMetrics total() {
+    synchronized (foldLock) {
+      return sum();
+    }
+  }
+
+  private static SearchMetrics sum() {
+    SearchMetrics total = new SearchMetrics();
+    total.latency = new long[BUCKETS];
+    total.nodesPerDecision = new long[BUCKETS];
+    for (SearchMetrics metrics : active) {
+      total.add(metrics);
+      long[] latency = metrics.latency;
+      long[] nodes = metrics.nodesPerDecision;
+      if (latency != null && nodes != null) {
+        for (int b = 0; b < BUCKETS; b++) {
+          total.latency[b] += latency[b];
+          total.nodesPerDecision[b] += nodes[b];
+        }
+      }
+    }
+    total.placements += finishedPlacements.sum();
+    total.nodes += finishedNodes.sum();
+    total.clones += finishedClones.sum();
+    total.featureEvaluations += finishedEvaluations.sum();
+    total.lookAheads += finishedLookAheads.sum();
+    total.decisions += finishedDecisions.sum();
+    for (int b = 0; b < BUCKETS; b++) {
+      total.latency[b] += finishedLatencyHistogram[b].sum();
+      total.nodesPerDecision[b] += finishedNodesHistogram[b].sum();
+    }
+    total.games = finishedGames.sum();
+    return total;
+  }
+
+  // makes total() readable as tetris:type=SearchMetrics over JMX, once
+  public static synchronized void registerMBean() {
+    if (registered) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(new Live(),
+          new ObjectName("tetris:type=SearchMetrics"));
+      registered = true;
+    } catch (JMException e) {
+      System.out.println("Couldn't register search metrics: " + e.getMessage());
+    }
+  }
+
+  public long getPlacements() {
+    return placements;
+  }
+
+  public long getNodes() {
+    return nodes;
+  }
+
+  public long getClones() {
+    return clones;
+  }
+
+  public long getFeatureEvaluations() {
+    return featureEvaluations;
+  }
+
+  public long getLookAheads() {
+    return lookAheads;
+  }
+
+  public long getDecisions() {
+    return decisions;
+  }
+
+  // games finished, only kept by total()
+  public long getGames() {
+    return games;
+  }
+
+  public double getNodesPerDecision() {
+    return decisions == 0 ? 0 : (double) nodes / decisions;
+  }
+
+  // share of the decisions that looked ahead
+  public double getLookAheadRate() {
+    return decisions == 0 ? 0 : (double) lookAheads / decisions;
+  }
+
+  public long[] getLatencyHistogram() {
+    return latency == null ? new long[BUCKETS] : latency.clone();
+  }
+
+  public long[] getNodesHistogram() {
+    return nodesPerDecision == null ? new long[BUCKETS] : nodesPerDecision.clone();
+  }
+
+  // decision latency below which fraction of the decisions finished, rounded
+  // up to a power of two
+  public long latencyPercentile(double fraction) {
+    return percentile(latency, fraction);
+  }
+
+  public long nodesPercentile(double fraction) {
+    return percentile(nodesPerDecision, fraction);
+  }
+
+  private long percentile(long[] histogram, double fraction) {
+    if (histogram == null || decisions == 0) {
+      return 0;
+    }
+    long count = 0;
+    for (long n : histogram) {
+      count += n;
+    }
+    long rank = Math.max(1, (long) Math.ceil(fraction * count));
+    for (int b = 0; b < BUCKETS; b++) {
+      rank -= histogram[b];
+      if (rank <= 0) {
+        return b + 1 < BUCKETS - 1 ? 1L << (b + 1) : Long.MAX_VALUE;
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  // the counters as JSON object members, starting with a comma
+  public void appendJson(StringBuilder json) {
+    json.append(",\"placements\":").append(placements)
+        .append(",\"nodes\":").append(nodes)
+        .append(",\"clones\":").append(clones)
+        .append(",\"featureEvaluations\":").append(featureEvaluations)
+        .append(",\"lookAheads\":").append(lookAheads)
+        .append(",\"decisions\":").append(decisions)
+        .append(",\"nodesPerDecisionP50\":").append(nodesPercentile(0.5))
+        .append(",\"nodesPerDecisionP99\":").append(nodesPercentile(0.99))
+        .append(",\"decisionMicrosP50\":").append(latencyPercentile(0.5) / 1e3)
+        .append(",\"decisionMicrosP99\":").append(latencyPercentile(0.99) / 1e3);
+  }
+
+  public String toJson() {
+    StringBuilder json = new StringBuilder(512);
+    json.append("{\"games\":").append(games);
+    appendJson(json);
+    json.append(",\"latencyHistogram\":[");
+    long[] histogram = getLatencyHistogram();
+    int used = BUCKETS;
+    while (used > 1 && histogram[used - 1] == 0) {
+      used--;
+    }
+    for (int b = 0; b < used; b++) {
+      json.append(b == 0 ? "" : ",").append(histogram[b]);
+    }
+    return json.append("]}").toString();
+  }
+
+  // read by JMX clients, every attribute is taken from a fresh total()
+  public interface SearchMetricsMXBean {
+    long getGames();
+
+    long getPlacements();
+
+    long getNodes();
+
+    long getClones();
+
+    long getFeatureEvaluations();
+
+    long getLookAheads();
+
+    long getDecisions();
+
+    double getNodesPerDecision();
+
+    double getLookAheadRate();
+
+    long getDecisionNanosP50();
+
+    long getDecisionNanosP99();
+
+    long[] getLatencyHistogram();
+
+    long[] getNodesHistogram();
+  }
+
+  private static class Live implements SearchMetricsMXBean {
+    public long getGames() {
+      return total().getGames();
+    }
+
+    public long getPlacements() {
+      return total().getPlacements();
+    }
+
+    public long getNodes() {
+      return total().getNodes();
+    }
+
+    public long getClones() {
+      return total().getClones();
+    }
+
+    public long getFeatureEvaluations() {
+      return total().getFeatureEvaluations();
+    }
+
+    public long getLookAheads() {
+      return total().getLookAheads();
+    }
+
+    public long getDecisions() {
+      return total().getDecisions();
+    }
+
+    public double getNodesPerDecision() {
+      return total().getNodesPerDecision();
+    }
+
+    public double getLookAheadRate() {
+      return total().getLookAheadRate();
+    }
+
+    public long getDecisionNanosP50() {
+      return total().latencyPercentile(0.5);
+    }
+
+    public long getDecisionNanosP99() {
+      return total().latencyPercentile(0.99);
+    }
+
+    public long[] getLatencyHistogram() {
+      return total().getLatencyHistogram();
+    }
+
+    public long[] getNodesHistogram() {
+      return total().getNodesHistogram();
+    }
+  }
+}
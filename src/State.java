@@ -16,7 +16,7 @@ public class State {
   public TLabel label;
 
   // current turn
-  private int turn = 0;
+  protected int turn = 0;
   private int cleared = 0;
 
   // each square in the grid - int means empty - other values mean the turn it was
@@ -37,6 +37,30 @@ public class State {
   public static final int ORIENT = 0;
   public static final int SLOT = 1;
 
+  // compiled placement table - one entry per (piece, legal move), built once by
+  // initializeLegalMoves() so makeMove and the feature code avoid the jagged
+  // pBottom/pTop lookups. Entry p of placementSlot/Width/Height describes one
+  // placement, entries p * PIECE_SPAN + i of placementBottom/Top describe column
+  // i of the piece and entries p * PIECE_SPAN + k of placementRowMask hold the
+  // cells of row k of the piece as a bitmask already shifted to the slot.
+  public static final int PIECE_SPAN = 4;
+  protected static final int MAX_ORIENTS = 4;
+  // first placement of each piece - placement of a move is pieceBase + move
+  protected static int[] placementPieceBase = new int[N_PIECES + 1];
+  // placement of slot 0 for [piece * MAX_ORIENTS + orient]
+  protected static int[] placementOrientBase = new int[N_PIECES * MAX_ORIENTS];
+  protected static int[] placementSlot;
+  protected static int[] placementWidth;
+  protected static int[] placementHeight;
+  protected static int[] placementBottom;
+  protected static int[] placementTop;
+  protected static int[] placementRowMask;
+  // move index of the left-right mirror image of a placement in the same piece,
+  // -1 when the mirror image is another piece
+  protected static int[] placementMirrorMove;
+  // piece whose shapes are the left-right mirror images of each piece's
+  public static int[] pieceMirror = new int[N_PIECES];
+
   // possible orientations for a given piece type
   protected static int[] pOrients = { 1, 2, 4, 4, 4, 2, 2 };
 
@@ -125,6 +149,94 @@ public class State {
         }
       }
     }
+    initializePlacements();
+  }
+
+  private static void initializePlacements() {
+    int n = 0;
+    for (int i = 0; i < N_PIECES; i++) {
+      placementPieceBase[i] = n;
+      n += legalMoves[i].length;
+    }
+    placementPieceBase[N_PIECES] = n;
+
+    placementSlot = new int[n];
+    placementWidth = new int[n];
+    placementHeight = new int[n];
+    placementBottom = new int[n * PIECE_SPAN];
+    placementTop = new int[n * PIECE_SPAN];
+    placementRowMask = new int[n * PIECE_SPAN];
+
+    for (int i = 0; i < N_PIECES; i++) {
+      for (int move = 0; move < legalMoves[i].length; move++) {
+        int orient = legalMoves[i][move][ORIENT];
+        int slot = legalMoves[i][move][SLOT];
+        int p = placementPieceBase[i] + move;
+        if (slot == 0) {
+          placementOrientBase[i * MAX_ORIENTS + orient] = p;
+        }
+        placementSlot[p] = slot;
+        placementWidth[p] = pWidth[i][orient];
+        placementHeight[p] = pHeight[i][orient];
+        for (int c = 0; c < pWidth[i][orient]; c++) {
+          placementBottom[p * PIECE_SPAN + c] = pBottom[i][orient][c];
+          placementTop[p * PIECE_SPAN + c] = pTop[i][orient][c];
+          for (int h = pBottom[i][orient][c]; h < pTop[i][orient][c]; h++) {
+            placementRowMask[p * PIECE_SPAN + h] |= 1 << (slot + c);
+          }
+        }
+      }
+    }
+
+    placementMirrorMove = new int[n];
+    for (int i = 0; i < N_PIECES; i++) {
+      for (int j = 0; j < N_PIECES; j++) {
+        if (mirrorOrient(i, 0, j) != -1) {
+          pieceMirror[i] = j;
+        }
+      }
+      for (int move = 0; move < legalMoves[i].length; move++) {
+        int orient = legalMoves[i][move][ORIENT];
+        int slot = legalMoves[i][move][SLOT];
+        int mirror = mirrorOrient(i, orient, i);
+        int p = placementPieceBase[i] + move;
+        placementMirrorMove[p] = -1;
+        if (mirror != -1) {
+          int mirrorSlot = COLS - pWidth[i][orient] - slot;
+          placementMirrorMove[p] = placementOf(i, mirror, mirrorSlot) - placementPieceBase[i];
+        }
+      }
+    }
+  }
+
+  // orientation of piece j that is the left-right mirror image of piece i in
+  // orient, -1 if there is none
+  private static int mirrorOrient(int i, int orient, int j) {
+    int width = pWidth[i][orient];
+    for (int k = 0; k < pOrients[j]; k++) {
+      if (pWidth[j][k] != width) {
+        continue;
+      }
+      boolean mirrored = true;
+      for (int c = 0; c < width; c++) {
+        mirrored &= pBottom[j][k][c] == pBottom[i][orient][width - 1 - c];
+        mirrored &= pTop[j][k][c] == pTop[i][orient][width - 1 - c];
+      }
+      if (mirrored) {
+        return k;
+      }
+    }
+    return -1;
+  }
+
+  // placement table entry of a move index for the given piece
+  public static int placementOf(int piece, int move) {
+    return placementPieceBase[piece] + move;
+  }
+
+  // placement table entry of an orient and slot for the given piece
+  public static int placementOf(int piece, int orient, int slot) {
+    return placementOrientBase[piece * MAX_ORIENTS + orient] + slot;
   }
 
   // constructor
@@ -163,37 +275,42 @@ public class State {
   // returns false if you lose - true otherwise
   public boolean makeMove(int orient, int slot) {
     turn++;
+    int p = placementOf(nextPiece, orient, slot);
+    int span = p * PIECE_SPAN;
+    int width = placementWidth[p];
+    int pieceHeight = placementHeight[p];
+
     // height if the first column makes contact
-    int height = top[slot] - pBottom[nextPiece][orient][0];
+    int height = top[slot] - placementBottom[span];
     // for each column beyond the first in the piece
-    for (int c = 1; c < pWidth[nextPiece][orient]; c++) {
-      height = Math.max(height, top[slot + c] - pBottom[nextPiece][orient][c]);
+    for (int c = 1; c < width; c++) {
+      height = Math.max(height, top[slot + c] - placementBottom[span + c]);
     }
 
     // check if game ended
-    if (height + pHeight[nextPiece][orient] >= ROWS) {
+    if (height + pieceHeight >= ROWS) {
       lost = true;
       return false;
     }
 
     // for each column in the piece - fill in the appropriate blocks
-    for (int i = 0; i < pWidth[nextPiece][orient]; i++) {
+    for (int i = 0; i < width; i++) {
 
       // from bottom to top of brick
-      for (int h = height + pBottom[nextPiece][orient][i]; h < height + pTop[nextPiece][orient][i]; h++) {
+      for (int h = height + placementBottom[span + i]; h < height + placementTop[span + i]; h++) {
         field[h][i + slot] = turn;
       }
     }
 
     // adjust top
-    for (int c = 0; c < pWidth[nextPiece][orient]; c++) {
-      top[slot + c] = height + pTop[nextPiece][orient][c];
+    for (int c = 0; c < width; c++) {
+      top[slot + c] = height + placementTop[span + c];
     }
 
     int rowsCleared = 0;
 
     // check for full rows - starting at the top
-    for (int r = height + pHeight[nextPiece][orient] - 1; r >= height; r--) {
+    for (int r = height + pieceHeight - 1; r >= height; r--) {
       // check all columns in the row
       boolean full = true;
       for (int c = 0; c < COLS; c++) {
@@ -237,7 +354,7 @@ public class State {
     label.line(0, ROWS - 1, COLS, ROWS - 1);
 
     // show bricks
-
+    int[][] field = getField();
     for (int c = 0; c < COLS; c++) {
       for (int r = 0; r < top[c]; r++) {
         if (field[r][c] != 0) {
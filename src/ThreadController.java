@@ -1,49 +1,127 @@
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 
+// Long-lived evaluation service - one work-stealing pool, sized to the cores,
+// runs the games of every generation. Games are submitted into batches and
+// each batch is waited on separately, so a batch can be dispatched while the
+// stragglers of the one before it are still running. With
+// Constant.VIRTUAL_THREADS each game gets a virtual thread instead.
 public class ThreadController {
 
-    private static final int CORE_POOL_SIZE = 50;
-    private static final int MAX_POOL_SIZE = 100;
-    private static final long KEEP_ALIVE_TIME = 50000;
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
 
 
     private static final ThreadController INSTANCE = new ThreadController();
 
-    private ThreadPoolExecutor executor;
+    private final ExecutorService executor = createExecutor();
+
+    // batch of submitTask and waitFinishUpdate
+    private Batch defaultBatch = new Batch();
 
     private ThreadController() {
-        executor = new ThreadPoolExecutor(CORE_POOL_SIZE,
-                                            MAX_POOL_SIZE,
-                                            KEEP_ALIVE_TIME,
-                                            TimeUnit.SECONDS,
-                                            new LinkedBlockingQueue<Runnable>());
     }
 
     public static ThreadController getInstance() {
         return INSTANCE;
     }
 
-    public void submitTask(Thread thread) {
-        executor.submit(thread);
+    private static ExecutorService createExecutor() {
+        if (Constant.VIRTUAL_THREADS) {
+            // looked up reflectively so that the code still builds on Java 17
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.out.println("Virtual threads need Java 21, using the thread pool");
+            }
+        }
+        // async mode - games are independent and best run in submission order
+        return new ForkJoinPool(POOL_SIZE,
+                                ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+                                null,
+                                true);
+    }
+
+    // games run at once, 0 for a thread per game
+    public int getPoolSize() {
+        return executor instanceof ForkJoinPool ? POOL_SIZE : 0;
+    }
+
+    // where games run, for work that has to follow them such as breeding
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public Batch newBatch() {
+        return new Batch();
+    }
+
+    // batch that submitTask adds to until the next waitFinishUpdate
+    public Batch currentBatch() {
+        return defaultBatch;
+    }
+
+    public Future<Integer> submitTask(Callable<Integer> game) {
+        return defaultBatch.submit(game);
     }
 
+    // waits for every task submitted through submitTask so far
     public void waitFinishUpdate() {
-        try {
-            executor.shutdown();
-            executor.awaitTermination(Integer.MAX_VALUE, TimeUnit.SECONDS);
-
-            // Restart after shutdown
-            executor = new ThreadPoolExecutor(CORE_POOL_SIZE,
-                                                MAX_POOL_SIZE,
-                                                KEEP_ALIVE_TIME,
-                                                TimeUnit.SECONDS,
-                                                new LinkedBlockingQueue<Runnable>());
-        } catch (InterruptedException e) {
-            System.out.println("ERROR: Thread execution interrupted");
-            System.exit(1);
+        Batch batch = defaultBatch;
+        defaultBatch = new Batch();
+        batch.await();
+    }
+
+    // tasks that complete together, such as the games of one generation
+    public class Batch {
+
+        private final ConcurrentLinkedQueue<Future<?>> tasks = new ConcurrentLinkedQueue<Future<?>>();
+
+        private Batch() {
+        }
+
+        public <T> Future<T> submit(Callable<T> task) {
+            Future<T> future = executor.submit(task);
+            tasks.add(future);
+            return future;
+        }
+
+        // a task running elsewhere, such as a game on an EvaluationWorker
+        public void add(Future<?> task) {
+            tasks.add(task);
+        }
+
+        public boolean isDone() {
+            for (Future<?> task : tasks) {
+                if (!task.isDone()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // blocks until every task submitted to the batch has finished
+        public void await() {
+            try {
+                for (Future<?> task : tasks) {
+                    task.get();
+                }
+            } catch (InterruptedException e) {
+                System.out.println("ERROR: Thread execution interrupted");
+                System.exit(1);
+            } catch (ExecutionException e) {
+                System.out.println("ERROR: Task failed");
+                e.getCause().printStackTrace();
+                System.exit(1);
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,107 @@
+import java.util.concurrent.atomic.LongAdder;
+
+// Bounded cache of search values keyed on a Zobrist hash of the board plus the
+// piece to play (see BitBoardState.boardHash()). Entries live in 4-way sets
+// picked by the low bits of the key, and a full set evicts with a clock sweep
+// over the reference bits of its ways. Key and value are stored xor-ed together
+// as in lockless hashing, so threads racing on an entry can only ever read a
+// miss, never another board's value. Key 0 is reserved for empty entries.
+public class TranspositionCache {
+
+  private static final int WAYS = 4;
+  // key + value + reference bit
+  private static final int ENTRY_BYTES = 17;
+
+  private final long[] keys;
+  private final long[] values;
+  private final byte[] referenced;
+  private final byte[] hands;
+  private final int setMask;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  // sized to the largest power of two number of sets within maxBytes
+  public TranspositionCache(long maxBytes) {
+    long sets = Math.max(1, maxBytes / (ENTRY_BYTES * WAYS + 1));
+    int numSets = Integer.highestOneBit((int) Math.min(sets, 1 << 26));
+    keys = new long[numSets * WAYS];
+    values = new long[numSets * WAYS];
+    referenced = new byte[numSets * WAYS];
+    hands = new byte[numSets];
+    setMask = numSets - 1;
+  }
+
+  private int setOf(long key) {
+    return (int) (key ^ (key >>> 32)) & setMask;
+  }
+
+  // cached value of key, NaN on a miss
+  public double get(long key) {
+    if (key != 0) {
+      int base = setOf(key) * WAYS;
+      for (int way = base; way < base + WAYS; way++) {
+        long value = values[way];
+        if ((keys[way] ^ value) == key) {
+          referenced[way] = 1;
+          hits.increment();
+          return Double.longBitsToDouble(value);
+        }
+      }
+    }
+    misses.increment();
+    return Double.NaN;
+  }
+
+  public void put(long key, double value) {
+    if (key == 0) {
+      return;
+    }
+    int set = setOf(key);
+    int base = set * WAYS;
+    int way = -1;
+    for (int i = base; i < base + WAYS; i++) {
+      if ((keys[i] ^ values[i]) == key) {
+        way = i;
+        break;
+      }
+    }
+    if (way == -1) {
+      // clock sweep - clear reference bits until an unreferenced way comes up
+      int hand = hands[set];
+      while (referenced[base + hand] != 0) {
+        referenced[base + hand] = 0;
+        hand = (hand + 1) & (WAYS - 1);
+      }
+      way = base + hand;
+      hands[set] = (byte) ((hand + 1) & (WAYS - 1));
+    }
+    long bits = Double.doubleToRawLongBits(value);
+    values[way] = bits;
+    keys[way] = key ^ bits;
+    referenced[way] = 1;
+  }
+
+  public int capacity() {
+    return keys.length;
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public double getHitRate() {
+    long hits = getHits();
+    long total = hits + getMisses();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  @Override
+  public String toString() {
+    return "hits " + getHits() + " misses " + getMisses() + " capacity " + capacity();
+  }
+}